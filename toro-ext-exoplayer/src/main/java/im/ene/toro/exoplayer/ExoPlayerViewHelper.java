@@ -18,6 +18,10 @@ package im.ene.toro.exoplayer;
 
 import android.support.annotation.NonNull;
 import android.view.View;
+import com.google.android.exoplayer.MediaCodecTrackRenderer;
+import com.google.android.exoplayer.ParserException;
+import com.google.android.exoplayer.drm.UnsupportedDrmException;
+import im.ene.toro.PlaybackErrorPolicy;
 import im.ene.toro.PlayerViewHelper;
 import im.ene.toro.ToroPlayer;
 import im.ene.toro.exoplayer.internal.ExoMediaPlayer;
@@ -73,4 +77,23 @@ public class ExoPlayerViewHelper extends PlayerViewHelper implements PlayerCallb
   @Override public final boolean onPlayerError(Exception error) {
     return super.onPlaybackError(error);
   }
+
+  @Override protected int getErrorType(Exception error) {
+    Throwable cause = error;
+    while (cause != null) {
+      // ParserException is an IOException, but retrying a malformed stream doesn't help.
+      if (cause instanceof ParserException
+          || cause instanceof MediaCodecTrackRenderer.DecoderInitializationException) {
+        return PlaybackErrorPolicy.ERROR_TYPE_DECODER;
+      }
+
+      if (cause instanceof UnsupportedDrmException) {
+        return PlaybackErrorPolicy.ERROR_TYPE_DRM;
+      }
+
+      cause = cause.getCause();
+    }
+
+    return super.getErrorType(error);
+  }
 }
@@ -21,10 +21,14 @@ import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
+import android.graphics.SurfaceTexture;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.FloatRange;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.view.Surface;
 import android.view.SurfaceView;
@@ -34,8 +38,9 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import com.google.android.exoplayer.ExoPlayer;
 import com.google.android.exoplayer.audio.AudioCapabilities;
-import com.google.android.exoplayer.audio.AudioCapabilitiesReceiver;
 import com.google.android.exoplayer.util.Util;
+import im.ene.toro.BufferProfile;
+import im.ene.toro.exoplayer.internal.AudioCapabilitiesMonitor;
 import im.ene.toro.exoplayer.internal.ExoMediaPlayer;
 import im.ene.toro.exoplayer.internal.RendererBuilderFactory;
 
@@ -66,6 +71,12 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
    */
   public static final int RESIZE_MODE_FIXED_HEIGHT = 2;
 
+  /**
+   * How long a retained surface, and the player bound to it, are kept once this View is detached.
+   * See {@link #setSurfaceRetentionEnabled(boolean)}.
+   */
+  public static final long SURFACE_RETENTION_TIMEOUT_MS = 5000;
+
   private static final int SURFACE_TYPE_DEFAULT = 0;
   private static final int SURFACE_TYPE_SURFACE_VIEW = 1;
   private static final int SURFACE_TYPE_TEXTURE_VIEW = 2;
@@ -77,6 +88,12 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
       mPlaybackState = playbackState;
       setKeepScreenOn(isInPlayableState());
 
+      if (playbackState == ExoMediaPlayer.STATE_ENDED && mLoopingEnabled && mMediaPlayer != null) {
+        // Replay from the start, keeping the prepared renderers and their buffers.
+        mMediaPlayer.seekTo(0);
+        return;
+      }
+
       if (playbackState == ExoMediaPlayer.STATE_ENDED) {
         mPlayRequested = false;
         releasePlayer();
@@ -221,58 +238,99 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
   boolean mPlayerNeedsPrepare;
   boolean mPlayRequested = false;
   boolean mBackgroundAudioEnabled = false;
+  private boolean mLoopingEnabled = false;
+  private BufferProfile mBufferProfile = BufferProfile.FULL_SCREEN;
+  private boolean mMuted = false;
+  boolean mSurfaceRetentionEnabled = false;
+  SurfaceTexture mRetainedSurfaceTexture;
+  private final Handler retentionHandler = new Handler(Looper.getMainLooper());
+  // Not re-attached in time, so the retained surface and its player are dropped.
+  private final Runnable retentionTimeout = new Runnable() {
+    @Override public void run() {
+      mPlayerPosition = 0;
+      releasePlayer();
+    }
+  };
   private OnReleaseCallback onReleaseCallback;
 
   private PlayerCallback playerCallback;
-  private AudioCapabilitiesReceiver mAudioCapabilitiesReceiver;
+  // Capabilities current player was built with
   private AudioCapabilities mAudioCapabilities;
 
-  private AudioCapabilitiesReceiver.Listener audioCapabilitiesListener =
-      new AudioCapabilitiesReceiver.Listener() {
-        @Override public void onAudioCapabilitiesChanged(AudioCapabilities audioCapabilities) {
+  // Only registered while there is a player, see preparePlayer() and releasePlayer().
+  private AudioCapabilitiesMonitor.Listener audioCapabilitiesListener =
+      new AudioCapabilitiesMonitor.Listener() {
+        @Override
+        public void onAudioCapabilitiesChanged(@NonNull AudioCapabilities audioCapabilities) {
           maybeNotifyAudioCapabilitiesChanged(audioCapabilities);
         }
       };
 
   private void maybeNotifyAudioCapabilitiesChanged(AudioCapabilities audioCapabilities) {
-    if (this.mAudioCapabilities == audioCapabilities) {
-      return;
-    }
-
-    if (mMediaPlayer == null) {
+    if (mMediaPlayer == null || audioCapabilities.equals(mAudioCapabilities)) {
       return;
     }
 
     boolean backgrounded = mMediaPlayer.getBackgrounded();
     boolean playWhenReady = mMediaPlayer.getPlayWhenReady();
-    releasePlayer();
+    // Re-built right away, so the callback is not told about a release.
+    releaseMediaPlayer();
     preparePlayer(playWhenReady);
-    mMediaPlayer.setBackgrounded(backgrounded);
+    if (mMediaPlayer != null) {
+      mMediaPlayer.setBackgrounded(backgrounded);
+    }
   }
 
   @Override protected void onAttachedToWindow() {
     super.onAttachedToWindow();
-    this.mAudioCapabilities = AudioCapabilities.getCapabilities(getContext());
-    mAudioCapabilitiesReceiver =
-        new AudioCapabilitiesReceiver(getContext(), audioCapabilitiesListener);
-    mAudioCapabilitiesReceiver.register();
+    retentionHandler.removeCallbacks(retentionTimeout);
+    if (mRetainedSurfaceTexture != null && surfaceView instanceof TextureView) {
+      TextureView textureView = (TextureView) surfaceView;
+      if (textureView.getSurfaceTexture() != mRetainedSurfaceTexture) {
+        textureView.setSurfaceTexture(mRetainedSurfaceTexture);
+      }
+      mRetainedSurfaceTexture = null;
+    }
   }
 
   @Override protected void onDetachedFromWindow() {
     super.onDetachedFromWindow();
-    try {
-      mAudioCapabilitiesReceiver.unregister();
-      mAudioCapabilitiesReceiver = null;
-    } catch (IllegalArgumentException er) {
-      // Have no idea, it crash by this Exception sometime.
-      er.printStackTrace();
+    if (mSurfaceRetentionEnabled && mRetainedSurfaceTexture != null) {
+      // Likely to be re-attached soon, keep current player. It is released with the surface once
+      // recycled, or if not re-attached in time.
+      retentionHandler.postDelayed(retentionTimeout, SURFACE_RETENTION_TIMEOUT_MS);
+      return;
     }
+
     mPlayerPosition = 0;
-    mAudioCapabilities = null;
     releasePlayer();
   }
 
   public final void releasePlayer() {
+    boolean released = releaseMediaPlayer();
+    releaseRetainedSurface();
+    if (released && playerCallback != null) {
+      playerCallback.onPlayerReleased();
+    }
+  }
+
+  // The retained surface is only useful to the player bound to it.
+  private void releaseRetainedSurface() {
+    retentionHandler.removeCallbacks(retentionTimeout);
+    if (mRetainedSurfaceTexture != null) {
+      if (mSurface != null) {
+        mSurface.release();
+        mSurface = null;
+      }
+      mRetainedSurfaceTexture.release();
+      mRetainedSurfaceTexture = null;
+    }
+  }
+
+  /**
+   * @return {@code true} if there was a player to release, {@code false} otherwise.
+   */
+  private boolean releaseMediaPlayer() {
     if (mMediaPlayer != null) {
       if (onReleaseCallback != null) {
         onReleaseCallback.onRelease(new SimpleMediaPlayer() {
@@ -290,7 +348,12 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
       mMediaPlayer.removeListener(playerListener);
       mMediaPlayer.release();
       mMediaPlayer = null;
+      AudioCapabilitiesMonitor.with(getContext()).removeListener(audioCapabilitiesListener);
+      mAudioCapabilities = null;
+      return true;
     }
+
+    return false;
   }
 
   public final void preparePlayer(boolean playWhenReady) {
@@ -300,8 +363,13 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
 
     if (mMediaPlayer == null) {
       mMediaPlayer =
-          new ExoMediaPlayer(RendererBuilderFactory.createRendererBuilder(getContext(), mMedia));
+          new ExoMediaPlayer(RendererBuilderFactory.createRendererBuilder(getContext(), mMedia),
+              mBufferProfile);
       mMediaPlayer.addListener(playerListener);
+      mMediaPlayer.setAudioDisabled(mMuted);
+      AudioCapabilitiesMonitor monitor = AudioCapabilitiesMonitor.with(getContext());
+      mAudioCapabilities = monitor.getCapabilities();
+      monitor.addListener(audioCapabilitiesListener);
       // TODO Define the need of Caption/Subtitle and MetaData Listener
       // mMediaPlayer.setCaptionListener(mExoMediaPlayerHelper);
       // mMediaPlayer.setMetadataListener(mExoMediaPlayerHelper);
@@ -320,6 +388,22 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
     mMediaPlayer.setPlayWhenReady(playWhenReady);
   }
 
+  /**
+   * Prepare the player to start from {@code position}. The position is applied before the
+   * renderers are built, so the player only buffers from there. An existing player keeps its
+   * current position.
+   *
+   * @param playWhenReady Immediately start playback when Ready.
+   * @param position position to start from, in millisecond.
+   */
+  public final void preparePlayer(boolean playWhenReady, long position) {
+    if (mMediaPlayer == null) {
+      mPlayerPosition = Math.max(0, position);
+    }
+
+    preparePlayer(playWhenReady);
+  }
+
   public void pause() {
     mPlayRequested = false;
     if (mMediaPlayer != null) {
@@ -340,11 +424,34 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
   }
 
   public void setVolume(@FloatRange(from = 0.f, to = 1.f) float volume) {
+    if ((volume <= 0.f) != mMuted) {
+      setMuted(volume <= 0.f);
+    }
+
     if (mMediaPlayer != null) {
       mMediaPlayer.setVolume(volume);
     }
   }
 
+  /**
+   * Muted playback doesn't decode audio at all, which is cheaper than a silent decoder for
+   * autoplay in a list. Setting volume to 0 mutes too. Un-muting, or setting a non-zero volume,
+   * re-enables audio without re-preparing the player. View holders mute players autoplaying in
+   * {@link im.ene.toro.AutoplayPolicy#MODE_PREVIEW}.
+   *
+   * @param muted {@code true} to disable audio, {@code false} otherwise.
+   */
+  public void setMuted(boolean muted) {
+    mMuted = muted;
+    if (mMediaPlayer != null) {
+      mMediaPlayer.setAudioDisabled(muted);
+    }
+  }
+
+  public boolean isMuted() {
+    return mMuted;
+  }
+
   @SuppressWarnings("ConstantConditions") public void start() {
     mPlayRequested = true;
     if (mMediaPlayer == null) {
@@ -375,10 +482,55 @@ public class ExoVideoView extends FrameLayout /* implements MediaPlayer */ {
     return mMediaPlayer != null ? mMediaPlayer.getAudioSessionId() : 0;
   }
 
+  /**
+   * Keep the video surface, and current player bound to it, while this View is detached from
+   * Window (e.g. an item scrolled off screen and cached by RecyclerView). Once re-attached, the
+   * same surface is reused so neither the surface nor the decoder output need to be re-created.
+   * Only applies to TextureView; a SurfaceView's surface is always destroyed with its Window.
+   * The surface is released with the player, or once detached for longer than {@link
+   * #SURFACE_RETENTION_TIMEOUT_MS}. Retention does not outlive recycling: a recycled View
+   * releases its player, and the surface with it.
+   *
+   * @param enabled {@code true} to retain the surface across detach and re-attach.
+   */
+  public void setSurfaceRetentionEnabled(boolean enabled) {
+    mSurfaceRetentionEnabled = enabled;
+    if (!enabled && mRetainedSurfaceTexture != null && !ViewCompat.isAttachedToWindow(this)) {
+      releasePlayer();
+    }
+  }
+
+  /**
+   * Set the buffering targets of the player, e.g. {@link BufferProfile#FEED_PREVIEW} for autoplay
+   * in a list. Applied from the next player preparation.
+   *
+   * @param bufferProfile the profile to use.
+   */
+  public void setBufferProfile(@NonNull BufferProfile bufferProfile) {
+    mBufferProfile = bufferProfile;
+  }
+
+  @NonNull public BufferProfile getBufferProfile() {
+    return mBufferProfile;
+  }
+
   public void setBackgroundAudioEnabled(boolean enabled) {
     mBackgroundAudioEnabled = enabled;
   }
 
+  public boolean isBackgroundAudioEnabled() {
+    return mBackgroundAudioEnabled;
+  }
+
+  /**
+   * Keep replaying current Media in place when it ends, instead of releasing the player.
+   *
+   * @param enabled {@code true} to loop current Media, {@code false} otherwise.
+   */
+  public void setLoopingEnabled(boolean enabled) {
+    mLoopingEnabled = enabled;
+  }
+
   public void setOnReleaseCallback(OnReleaseCallback onReleaseCallback) {
     this.onReleaseCallback = onReleaseCallback;
   }
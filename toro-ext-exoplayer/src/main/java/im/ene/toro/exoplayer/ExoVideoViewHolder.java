@@ -20,9 +20,11 @@ import android.support.annotation.CallSuper;
 import android.support.annotation.FloatRange;
 import android.support.annotation.NonNull;
 import android.view.View;
+import im.ene.toro.AutoplayPolicy;
+import im.ene.toro.BackgroundAudioPlayer;
+import im.ene.toro.BufferProfile;
 import im.ene.toro.Toro;
 import im.ene.toro.ToroAdapter;
-import im.ene.toro.ToroPlayer;
 import im.ene.toro.ToroUtil;
 
 /**
@@ -31,11 +33,16 @@ import im.ene.toro.ToroUtil;
  * @deprecated Use exoplayer2 extension instead
  */
 @Deprecated
-public abstract class ExoVideoViewHolder extends ToroAdapter.ViewHolder implements ToroPlayer {
+public abstract class ExoVideoViewHolder extends ToroAdapter.ViewHolder
+    implements BackgroundAudioPlayer {
 
   @NonNull protected final ExoVideoView videoView;
   protected final ExoPlayerViewHelper helper;
   private boolean isPlayable = true; // normally true
+  // Preview buffering was picked by the AutoplayPolicy, not by the client.
+  private boolean previewByPolicy = false;
+  // Audio was muted by the AutoplayPolicy, not by the client.
+  private boolean mutedByPolicy = false;
 
   public ExoVideoViewHolder(View itemView) {
     super(itemView);
@@ -49,6 +56,10 @@ public abstract class ExoVideoViewHolder extends ToroAdapter.ViewHolder implemen
 
   protected abstract ExoVideoView findVideoView(View itemView);
 
+  @CallSuper @Override protected void onRecycled() {
+    helper.onRecycled();
+  }
+
   @CallSuper @Override public void onAttachedToWindow() {
     helper.onAttachedToWindow();
   }
@@ -65,10 +76,49 @@ public abstract class ExoVideoViewHolder extends ToroAdapter.ViewHolder implemen
 
   }
 
+  /**
+   * See {@link ExoVideoView#setBackgroundAudioEnabled(boolean)}.
+   */
+  @Override public boolean isBackgroundAudioEnabled() {
+    return videoView.isBackgroundAudioEnabled();
+  }
+
   @Override public void preparePlayer(boolean playWhenReady) {
+    applyAutoplayMode(playWhenReady);
     videoView.preparePlayer(playWhenReady);
   }
 
+  @Override public void preparePlayer(boolean playWhenReady, long position) {
+    applyAutoplayMode(playWhenReady);
+    videoView.preparePlayer(playWhenReady, position);
+  }
+
+  // Players prepared by the election (not started right away) buffer as much as the network
+  // affords. A buffer profile set by the client is kept.
+  private void applyAutoplayMode(boolean playWhenReady) {
+    if (playWhenReady) {
+      return;
+    }
+
+    boolean preview = Toro.getAutoplayPolicy().getMode() == AutoplayPolicy.MODE_PREVIEW;
+    if (preview && videoView.getBufferProfile() == BufferProfile.FULL_SCREEN) {
+      videoView.setBufferProfile(BufferProfile.FEED_PREVIEW);
+      previewByPolicy = true;
+    } else if (!preview && previewByPolicy) {
+      videoView.setBufferProfile(BufferProfile.FULL_SCREEN);
+      previewByPolicy = false;
+    }
+
+    // Previews autoplay without decoding audio, until the user turns the volume up.
+    if (preview && !videoView.isMuted()) {
+      videoView.setMuted(true);
+      mutedByPolicy = true;
+    } else if (!preview && mutedByPolicy) {
+      videoView.setMuted(false);
+      mutedByPolicy = false;
+    }
+  }
+
   @Override public void releasePlayer() {
     videoView.releasePlayer();
   }
@@ -126,6 +176,9 @@ public abstract class ExoVideoViewHolder extends ToroAdapter.ViewHolder implemen
 
   @Override public void setVolume(@FloatRange(from = 0.f, to = 1.f) float volume) {
     this.videoView.setVolume(volume);
+    if (volume > 0.f) {
+      mutedByPolicy = false;
+    }
   }
 
   @Override public int getPlayOrder() {
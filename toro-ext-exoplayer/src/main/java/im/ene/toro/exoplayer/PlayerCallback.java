@@ -38,4 +38,10 @@ public interface PlayerCallback {
    * @param error The error.
    */
   boolean onPlayerError(Exception error);
+
+  /**
+   * Invoked once the View released its player, including when it did so by itself (e.g. on detach
+   * or on completion), so that resources held for that player can be given back.
+   */
+  void onPlayerReleased();
 }
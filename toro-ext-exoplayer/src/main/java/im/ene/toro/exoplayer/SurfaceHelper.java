@@ -97,6 +97,16 @@ abstract class SurfaceHelper
 
         @Override public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
           Log.d("TEXTURE", "DESTROYED");
+          if (parent.mSurfaceRetentionEnabled) {
+            // Keep the SurfaceTexture and the player bound to it. It is given back to the
+            // TextureView once re-attached, so the decoder output doesn't need to be re-configured.
+            parent.mRetainedSurfaceTexture = surface;
+            if (parent.mMediaPlayer != null) {
+              parent.mMediaPlayer.setPlayWhenReady(false);
+            }
+            return false;
+          }
+
           if (!parent.mBackgroundAudioEnabled) {
             parent.releasePlayer();
           } else {
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.ene.toro.exoplayer.internal;
+package im.ene.toro.exoplayer.internal;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import com.google.android.exoplayer.audio.AudioCapabilities;
+import com.google.android.exoplayer.audio.AudioCapabilitiesReceiver;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Single, process wide, {@link AudioCapabilitiesReceiver}. It is registered once with the
+ * Application Context, instead of once per attached View, and fans capability changes out to the
+ * players currently prepared. Renderer builders read the current capabilities from here, without
+ * querying the system again.
+ */
+public final class AudioCapabilitiesMonitor implements AudioCapabilitiesReceiver.Listener {
+
+  /**
+   * Get notified when audio capabilities change, on main thread.
+   */
+  public interface Listener {
+
+    void onAudioCapabilitiesChanged(@NonNull AudioCapabilities audioCapabilities);
+  }
+
+  private static volatile AudioCapabilitiesMonitor sInstance;
+
+  public static AudioCapabilitiesMonitor with(@NonNull Context context) {
+    if (sInstance == null) {
+      synchronized (AudioCapabilitiesMonitor.class) {
+        if (sInstance == null) {
+          sInstance = new AudioCapabilitiesMonitor(context.getApplicationContext());
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  // Main thread
+  private final Set<Listener> listeners = new LinkedHashSet<>();
+  private volatile AudioCapabilities capabilities;
+
+  private AudioCapabilitiesMonitor(Context context) {
+    // Never unregistered, lives as long as the process.
+    AudioCapabilitiesReceiver receiver = new AudioCapabilitiesReceiver(context, this);
+    this.capabilities = receiver.register();
+  }
+
+  /**
+   * @return current audio capabilities. Can be called from any thread.
+   */
+  @NonNull public AudioCapabilities getCapabilities() {
+    return capabilities;
+  }
+
+  public void addListener(@NonNull Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(@NonNull Listener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override public void onAudioCapabilitiesChanged(AudioCapabilities audioCapabilities) {
+    if (audioCapabilities == null || audioCapabilities.equals(capabilities)) {
+      return;
+    }
+
+    this.capabilities = audioCapabilities;
+    // Listeners may remove themselves while being notified.
+    for (Listener listener : new ArrayList<>(listeners)) {
+      listener.onAudioCapabilitiesChanged(audioCapabilities);
+    }
+  }
+}
@@ -18,18 +18,20 @@ package im.ene.toro.exoplayer.internal;
 import android.content.Context;
 import android.media.AudioManager;
 import android.media.MediaCodec;
+import android.net.Uri;
 import android.os.Handler;
+import android.support.annotation.NonNull;
 import android.util.Log;
-import com.google.android.exoplayer.DefaultLoadControl;
 import com.google.android.exoplayer.LoadControl;
 import com.google.android.exoplayer.MediaCodecSelector;
 import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.TrackRenderer;
-import com.google.android.exoplayer.audio.AudioCapabilities;
 import com.google.android.exoplayer.chunk.ChunkSampleSource;
 import com.google.android.exoplayer.chunk.ChunkSource;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
 import com.google.android.exoplayer.chunk.FormatEvaluator.AdaptiveEvaluator;
 import com.google.android.exoplayer.dash.DashChunkSource;
+import com.google.android.exoplayer.dash.DashTrackSelector;
 import com.google.android.exoplayer.dash.DefaultDashTrackSelector;
 import com.google.android.exoplayer.dash.mpd.AdaptationSet;
 import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
@@ -43,13 +45,14 @@ import com.google.android.exoplayer.drm.MediaDrmCallback;
 import com.google.android.exoplayer.drm.StreamingDrmSessionManager;
 import com.google.android.exoplayer.drm.UnsupportedDrmException;
 import com.google.android.exoplayer.text.TextTrackRenderer;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
-import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultUriDataSource;
 import com.google.android.exoplayer.upstream.UriDataSource;
 import com.google.android.exoplayer.util.ManifestFetcher;
 import com.google.android.exoplayer.util.Util;
+import im.ene.toro.ManifestCache;
+import im.ene.toro.Toro;
 import java.io.IOException;
 
 /**
@@ -59,7 +62,7 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
 
   private static final String TAG = "DashRendererBuilder";
 
-  private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+  private static final int BUFFER_SEGMENT_SIZE = SharedAllocator.SEGMENT_SIZE;
   private static final int VIDEO_BUFFER_SEGMENTS = 200;
   private static final int AUDIO_BUFFER_SEGMENTS = 54;
   private static final int TEXT_BUFFER_SEGMENTS = 2;
@@ -97,12 +100,14 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
   }
 
   private static final class AsyncRendererBuilder
-      implements ManifestFetcher.ManifestCallback<MediaPresentationDescription>, UtcTimingCallback {
+      implements ManifestFetcher.ManifestCallback<MediaPresentationDescription>, UtcTimingCallback,
+      ManifestCache.Callback<MediaPresentationDescription> {
 
     private final Context context;
     private final String userAgent;
     private final MediaDrmCallback drmCallback;
     private final ExoMediaPlayer player;
+    private final Uri manifestUri;
     private final ManifestFetcher<MediaPresentationDescription> manifestFetcher;
     private final UriDataSource manifestDataSource;
 
@@ -116,17 +121,23 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
       this.userAgent = userAgent;
       this.drmCallback = drmCallback;
       this.player = player;
+      this.manifestUri = Uri.parse(url);
       MediaPresentationDescriptionParser parser = new MediaPresentationDescriptionParser();
       manifestDataSource = new DefaultUriDataSource(context, userAgent);
       manifestFetcher = new ManifestFetcher<>(url, manifestDataSource, parser);
     }
 
     public void init() {
-      manifestFetcher.singleLoad(player.getMainHandler().getLooper(), this);
+      // Cached, or joining a load in flight, or loaded and cached for next players.
+      Toro.getManifestCache()
+          .load(manifestUri, MediaPresentationDescription.class,
+              new ManifestLoader<>(context, userAgent, new MediaPresentationDescriptionParser()),
+              this);
     }
 
     public void cancel() {
       canceled = true;
+      Toro.getManifestCache().cancel(manifestUri, MediaPresentationDescription.class, this);
     }
 
     @Override public void onSingleManifest(MediaPresentationDescription manifest) {
@@ -151,6 +162,34 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
       player.onRenderersError(e);
     }
 
+    @Override public void onManifestLoaded(@NonNull Uri uri,
+        @NonNull final MediaPresentationDescription manifest) {
+      // Delivered on main thread, build on the builder thread.
+      ExoMediaPlayer.getBuilderHandler().post(new Runnable() {
+        @Override public void run() {
+          if (canceled) {
+            return;
+          }
+
+          if (manifest.dynamic) {
+            // Live manifests are refreshed by the fetcher, let it load one.
+            manifestFetcher.singleLoad(ExoMediaPlayer.getBuilderHandler().getLooper(),
+                AsyncRendererBuilder.this);
+          } else {
+            onSingleManifest(manifest);
+          }
+        }
+      });
+    }
+
+    @Override public void onManifestError(@NonNull Uri uri, @NonNull final IOException error) {
+      ExoMediaPlayer.getBuilderHandler().post(new Runnable() {
+        @Override public void run() {
+          onSingleManifestError(error);
+        }
+      });
+    }
+
     @Override
     public void onTimestampResolved(UtcTimingElement utcTiming, long elapsedRealtimeOffset) {
       if (canceled) {
@@ -174,8 +213,9 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
     private void buildRenderers() {
       Period period = manifest.getPeriod(0);
       Handler mainHandler = player.getMainHandler();
-      LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
-      DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(mainHandler, player);
+      LoadControl loadControl =
+          new ToroLoadControl(SharedAllocator.with(context).newAllocator(), player);
+      BandwidthMeter bandwidthMeter = new ToroBandwidthMeter(context, mainHandler, player);
 
       boolean hasContentProtection = false;
       for (int i = 0; i < period.adaptationSets.size(); i++) {
@@ -207,10 +247,9 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
 
       // Build the video renderer.
       DataSource videoDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
-      ChunkSource videoChunkSource = new DashChunkSource(manifestFetcher,
+      ChunkSource videoChunkSource = buildChunkSource(
           DefaultDashTrackSelector.newVideoInstance(context, true, filterHdContent),
-          videoDataSource, new AdaptiveEvaluator(bandwidthMeter), LIVE_EDGE_LATENCY_MS,
-          elapsedRealTimeOffset, mainHandler, player, ExoMediaPlayer.TYPE_VIDEO);
+          videoDataSource, new AdaptiveEvaluator(bandwidthMeter), ExoMediaPlayer.TYPE_VIDEO);
       ChunkSampleSource videoSampleSource = new ChunkSampleSource(videoChunkSource, loadControl,
           VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
           ExoMediaPlayer.TYPE_VIDEO);
@@ -222,23 +261,21 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
       // Build the audio renderer.
       DataSource audioDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
       ChunkSource audioChunkSource =
-          new DashChunkSource(manifestFetcher, DefaultDashTrackSelector.newAudioInstance(),
-              audioDataSource, null, LIVE_EDGE_LATENCY_MS, elapsedRealTimeOffset, mainHandler,
-              player, ExoMediaPlayer.TYPE_AUDIO);
+          buildChunkSource(DefaultDashTrackSelector.newAudioInstance(), audioDataSource, null,
+              ExoMediaPlayer.TYPE_AUDIO);
       ChunkSampleSource audioSampleSource = new ChunkSampleSource(audioChunkSource, loadControl,
           AUDIO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
           ExoMediaPlayer.TYPE_AUDIO);
       EnhancedMediaCodecAudioTrackRenderer audioRenderer =
           new EnhancedMediaCodecAudioTrackRenderer(audioSampleSource, MediaCodecSelector.DEFAULT,
               drmSessionManager, true, mainHandler, player,
-              AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
+              AudioCapabilitiesMonitor.with(context).getCapabilities(), AudioManager.STREAM_MUSIC);
 
       // Build the text renderer.
       DataSource textDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
       ChunkSource textChunkSource =
-          new DashChunkSource(manifestFetcher, DefaultDashTrackSelector.newTextInstance(),
-              textDataSource, null, LIVE_EDGE_LATENCY_MS, elapsedRealTimeOffset, mainHandler,
-              player, ExoMediaPlayer.TYPE_TEXT);
+          buildChunkSource(DefaultDashTrackSelector.newTextInstance(), textDataSource, null,
+              ExoMediaPlayer.TYPE_TEXT);
       ChunkSampleSource textSampleSource = new ChunkSampleSource(textChunkSource, loadControl,
           TEXT_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
           ExoMediaPlayer.TYPE_TEXT);
@@ -253,6 +290,17 @@ public class DashRendererBuilder implements ExoMediaPlayer.RendererBuilder {
       player.onRenderers(renderers, bandwidthMeter);
     }
 
+    private ChunkSource buildChunkSource(DashTrackSelector trackSelector, DataSource dataSource,
+        FormatEvaluator formatEvaluator, int type) {
+      if (manifestFetcher.getManifest() == null) {
+        // Manifest came from the cache, and is static.
+        return new DashChunkSource(manifest, trackSelector, dataSource, formatEvaluator);
+      }
+
+      return new DashChunkSource(manifestFetcher, trackSelector, dataSource, formatEvaluator,
+          LIVE_EDGE_LATENCY_MS, elapsedRealTimeOffset, player.getMainHandler(), player, type);
+    }
+
     private static int getWidevineSecurityLevel(StreamingDrmSessionManager sessionManager) {
       String securityLevelProperty = sessionManager.getPropertyString("securityLevel");
       return securityLevelProperty.equals("L1") ? SECURITY_LEVEL_1
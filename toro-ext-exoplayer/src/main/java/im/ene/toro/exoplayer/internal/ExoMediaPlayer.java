@@ -17,7 +17,9 @@ package im.ene.toro.exoplayer.internal;
 
 import android.media.MediaCodec.CryptoException;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Process;
 import android.support.annotation.FloatRange;
 import android.view.Surface;
 import com.google.android.exoplayer.CodecCounters;
@@ -47,6 +49,7 @@ import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.util.DebugTextViewHelper;
 import com.google.android.exoplayer.util.PlayerControl;
+import im.ene.toro.BufferProfile;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
@@ -182,6 +185,9 @@ public class ExoMediaPlayer
   private static final int RENDERER_BUILDING_STATE_BUILDING = 2;
   private static final int RENDERER_BUILDING_STATE_BUILT = 3;
 
+  // Renderers of all players are built, and manifests parsed, on this thread.
+  private static Handler sBuilderHandler;
+
   private final RendererBuilder rendererBuilder;
   private final ExoPlayer player;
   private final PlayerControl playerControl;
@@ -198,9 +204,18 @@ public class ExoMediaPlayer
   private CodecCounters codecCounters;
   private Format videoFormat;
   private int videoTrackToRestore;
+  private int audioTrackToRestore;
 
   private BandwidthMeter bandwidthMeter;
+  private final BufferProfile bufferProfile;
+  // Read by the LoadControl, on playback thread.
+  private volatile boolean bufferPriority;
+  // Identifies the current renderer building, main thread
+  private int buildGeneration;
+  // Identifies the renderer building in progress, builder thread
+  private int builderGeneration;
   private boolean backgrounded;
+  private boolean audioDisabled;
 
   private CaptionListener captionListener;
   private Id3MetadataListener id3MetadataListener;
@@ -208,8 +223,18 @@ public class ExoMediaPlayer
   private InfoListener infoListener;
 
   public ExoMediaPlayer(RendererBuilder rendererBuilder) {
+    this(rendererBuilder, BufferProfile.FULL_SCREEN);
+  }
+
+  /**
+   * @param rendererBuilder builds the renderers of this player.
+   * @param bufferProfile buffering targets of this player, applied by the renderer builders.
+   */
+  public ExoMediaPlayer(RendererBuilder rendererBuilder, BufferProfile bufferProfile) {
     this.rendererBuilder = rendererBuilder;
-    player = ExoPlayer.Factory.newInstance(RENDERER_COUNT, 1000, 5000);
+    this.bufferProfile = bufferProfile;
+    player = ExoPlayer.Factory.newInstance(RENDERER_COUNT, bufferProfile.bufferForPlaybackMs,
+        bufferProfile.bufferForPlaybackAfterRebufferMs);
     player.addListener(this);
     playerControl = new PlayerControl(player);
     mainHandler = new Handler();
@@ -299,17 +324,46 @@ public class ExoMediaPlayer
     }
   }
 
+  public boolean getAudioDisabled() {
+    return audioDisabled;
+  }
+
+  /**
+   * Disable the audio track, so that audio is not decoded at all (unlike setting volume to 0).
+   * Can be called before preparation, and the audio track can be re-enabled without re-preparing.
+   *
+   * @param audioDisabled {@code true} to disable the audio track, {@code false} to restore it.
+   */
+  public void setAudioDisabled(boolean audioDisabled) {
+    if (this.audioDisabled == audioDisabled) {
+      return;
+    }
+    this.audioDisabled = audioDisabled;
+    if (audioDisabled) {
+      audioTrackToRestore = getSelectedTrack(TYPE_AUDIO);
+      setSelectedTrack(TYPE_AUDIO, TRACK_DISABLED);
+    } else {
+      setSelectedTrack(TYPE_AUDIO, audioTrackToRestore);
+    }
+  }
+
   public void prepare() {
     if (rendererBuildingState == RENDERER_BUILDING_STATE_BUILT) {
       player.stop();
     }
-    rendererBuilder.cancel();
     videoFormat = null;
     videoRenderer = null;
     audioRenderer = null;
     rendererBuildingState = RENDERER_BUILDING_STATE_BUILDING;
     maybeReportPlayerState();
-    rendererBuilder.buildRenderers(this);
+    final int generation = ++buildGeneration;
+    getBuilderHandler().post(new Runnable() {
+      @Override public void run() {
+        builderGeneration = generation;
+        rendererBuilder.cancel();
+        rendererBuilder.buildRenderers(ExoMediaPlayer.this);
+      }
+    });
   }
 
   public void setVolume(@FloatRange(from = 0.f, to = 1.f) float volume) {
@@ -323,7 +377,20 @@ public class ExoMediaPlayer
    * element may be null if there do not exist tracks of the corresponding type.
    * @param bandwidthMeter Provides an estimate of the currently available bandwidth. May be null.
    */
-  /* package */ void onRenderers(TrackRenderer[] renderers, BandwidthMeter bandwidthMeter) {
+  /* package */ void onRenderers(final TrackRenderer[] renderers,
+      final BandwidthMeter bandwidthMeter) {
+    final int generation = builderGeneration;
+    mainHandler.post(new Runnable() {
+      @Override public void run() {
+        // Ignore the result of a building canceled meanwhile.
+        if (generation == buildGeneration) {
+          completePreparation(renderers, bandwidthMeter);
+        }
+      }
+    });
+  }
+
+  private void completePreparation(TrackRenderer[] renderers, BandwidthMeter bandwidthMeter) {
     for (int i = 0; i < RENDERER_COUNT; i++) {
       if (renderers[i] == null) {
         // Convert a null renderer to a dummy renderer.
@@ -348,7 +415,18 @@ public class ExoMediaPlayer
    *
    * @param e Describes the error.
    */
-  /* package */ void onRenderersError(Exception e) {
+  /* package */ void onRenderersError(final Exception e) {
+    final int generation = builderGeneration;
+    mainHandler.post(new Runnable() {
+      @Override public void run() {
+        if (generation == buildGeneration) {
+          reportRenderersError(e);
+        }
+      }
+    });
+  }
+
+  private void reportRenderersError(Exception e) {
     if (internalErrorListener != null) {
       internalErrorListener.onRendererInitializationError(e);
     }
@@ -360,15 +438,32 @@ public class ExoMediaPlayer
   }
 
   public void setPlayWhenReady(boolean playWhenReady) {
+    bufferPriority = playWhenReady;
     player.setPlayWhenReady(playWhenReady);
   }
 
+  public BufferProfile getBufferProfile() {
+    return bufferProfile;
+  }
+
+  /**
+   * @return {@code true} if this player is playing, or about to, so its buffer comes first.
+   */
+  boolean isBufferPriority() {
+    return bufferPriority;
+  }
+
   public void seekTo(long positionMs) {
     player.seekTo(positionMs);
   }
 
   public void release() {
-    rendererBuilder.cancel();
+    buildGeneration++;
+    getBuilderHandler().post(new Runnable() {
+      @Override public void run() {
+        rendererBuilder.cancel();
+      }
+    });
     rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
     surface = null;
     player.release();
@@ -428,6 +523,21 @@ public class ExoMediaPlayer
     return mainHandler;
   }
 
+  /**
+   * @return the Handler of the thread renderer builders run on. Their callbacks (e.g. manifest
+   * loading) must be delivered on this thread too.
+   */
+  /* package */ static synchronized Handler getBuilderHandler() {
+    if (sBuilderHandler == null) {
+      HandlerThread thread =
+          new HandlerThread("Toro:RendererBuilder", Process.THREAD_PRIORITY_BACKGROUND);
+      thread.start();
+      sBuilderHandler = new Handler(thread.getLooper());
+    }
+
+    return sBuilderHandler;
+  }
+
   @Override public void onPlayerStateChanged(boolean playWhenReady, int state) {
     maybeReportPlayerState();
   }
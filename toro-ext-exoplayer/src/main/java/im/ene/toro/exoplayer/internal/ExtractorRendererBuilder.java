@@ -23,14 +23,12 @@ import android.os.Handler;
 import com.google.android.exoplayer.MediaCodecSelector;
 import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.TrackRenderer;
-import com.google.android.exoplayer.audio.AudioCapabilities;
 import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.ExtractorSampleSource;
 import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
-import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultUriDataSource;
 import im.ene.toro.exoplayer.internal.ExoMediaPlayer.RendererBuilder;
 
@@ -39,7 +37,7 @@ import im.ene.toro.exoplayer.internal.ExoMediaPlayer.RendererBuilder;
  */
 public class ExtractorRendererBuilder implements RendererBuilder {
 
-  private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+  private static final int BUFFER_SEGMENT_SIZE = SharedAllocator.SEGMENT_SIZE;
   private static final int BUFFER_SEGMENT_COUNT = 256;
 
   private final Context context;
@@ -53,20 +51,21 @@ public class ExtractorRendererBuilder implements RendererBuilder {
   }
 
   @Override public void buildRenderers(ExoMediaPlayer player) {
-    Allocator allocator = new DefaultAllocator(BUFFER_SEGMENT_SIZE);
+    Allocator allocator = SharedAllocator.with(context).newAllocator();
     Handler mainHandler = player.getMainHandler();
 
     // Build the video and audio renderers.
-    DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(mainHandler, null);
+    BandwidthMeter bandwidthMeter = new ToroBandwidthMeter(context, mainHandler, null);
     DataSource dataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
     ExtractorSampleSource sampleSource = new ExtractorSampleSource(uri, dataSource, allocator,
-        BUFFER_SEGMENT_COUNT * BUFFER_SEGMENT_SIZE, mainHandler, player, 0);
+        ToroLoadControl.capBufferSize(BUFFER_SEGMENT_COUNT * BUFFER_SEGMENT_SIZE,
+            player.getBufferProfile()), mainHandler, player, 0);
     MediaCodecVideoTrackRenderer videoRenderer =
         new MediaCodecVideoTrackRenderer(context, sampleSource, MediaCodecSelector.DEFAULT,
             MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000, mainHandler, player, 50);
     EnhancedMediaCodecAudioTrackRenderer audioRenderer =
         new EnhancedMediaCodecAudioTrackRenderer(sampleSource, MediaCodecSelector.DEFAULT, null,
-            true, mainHandler, player, AudioCapabilities.getCapabilities(context),
+            true, mainHandler, player, AudioCapabilitiesMonitor.with(context).getCapabilities(),
             AudioManager.STREAM_MUSIC);
     TrackRenderer textRenderer =
         new TextTrackRenderer(sampleSource, player, mainHandler.getLooper());
@@ -18,14 +18,14 @@ package im.ene.toro.exoplayer.internal;
 import android.content.Context;
 import android.media.AudioManager;
 import android.media.MediaCodec;
+import android.net.Uri;
 import android.os.Handler;
-import com.google.android.exoplayer.DefaultLoadControl;
+import android.support.annotation.NonNull;
 import com.google.android.exoplayer.LoadControl;
 import com.google.android.exoplayer.MediaCodecSelector;
 import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.SampleSource;
 import com.google.android.exoplayer.TrackRenderer;
-import com.google.android.exoplayer.audio.AudioCapabilities;
 import com.google.android.exoplayer.hls.DefaultHlsTrackSelector;
 import com.google.android.exoplayer.hls.HlsChunkSource;
 import com.google.android.exoplayer.hls.HlsMasterPlaylist;
@@ -38,12 +38,12 @@ import com.google.android.exoplayer.metadata.id3.Id3Frame;
 import com.google.android.exoplayer.metadata.id3.Id3Parser;
 import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.text.eia608.Eia608TrackRenderer;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
-import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultUriDataSource;
-import com.google.android.exoplayer.util.ManifestFetcher;
 import com.google.android.exoplayer.util.ManifestFetcher.ManifestCallback;
+import im.ene.toro.ManifestCache;
+import im.ene.toro.Toro;
 import im.ene.toro.exoplayer.internal.ExoMediaPlayer.RendererBuilder;
 import java.io.IOException;
 import java.util.List;
@@ -53,7 +53,7 @@ import java.util.List;
  */
 public class HlsRendererBuilder implements RendererBuilder {
 
-  private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+  private static final int BUFFER_SEGMENT_SIZE = SharedAllocator.SEGMENT_SIZE;
   private static final int MAIN_BUFFER_SEGMENTS = 254;
   private static final int AUDIO_BUFFER_SEGMENTS = 54;
   private static final int TEXT_BUFFER_SEGMENTS = 2;
@@ -84,12 +84,13 @@ public class HlsRendererBuilder implements RendererBuilder {
     }
   }
 
-  private static final class AsyncRendererBuilder implements ManifestCallback<HlsPlaylist> {
+  private static final class AsyncRendererBuilder
+      implements ManifestCallback<HlsPlaylist>, ManifestCache.Callback<HlsPlaylist> {
 
     private final Context context;
     private final String userAgent;
     private final ExoMediaPlayer player;
-    private final ManifestFetcher<HlsPlaylist> playlistFetcher;
+    private final Uri playlistUri;
 
     private boolean canceled;
 
@@ -97,17 +98,19 @@ public class HlsRendererBuilder implements RendererBuilder {
       this.context = context;
       this.userAgent = userAgent;
       this.player = player;
-      HlsPlaylistParser parser = new HlsPlaylistParser();
-      playlistFetcher = new ManifestFetcher<>(url, new DefaultUriDataSource(context, userAgent),
-          parser);
+      this.playlistUri = Uri.parse(url);
     }
 
     public void init() {
-      playlistFetcher.singleLoad(player.getMainHandler().getLooper(), this);
+      // Cached, or joining a load in flight, or loaded and cached for next players.
+      Toro.getManifestCache()
+          .load(playlistUri, HlsPlaylist.class,
+              new ManifestLoader<>(context, userAgent, new HlsPlaylistParser()), this);
     }
 
     public void cancel() {
       canceled = true;
+      Toro.getManifestCache().cancel(playlistUri, HlsPlaylist.class, this);
     }
 
     @Override
@@ -119,6 +122,25 @@ public class HlsRendererBuilder implements RendererBuilder {
       player.onRenderersError(e);
     }
 
+    @Override public void onManifestLoaded(@NonNull Uri uri,
+        @NonNull final HlsPlaylist manifest) {
+      // Delivered on main thread, build on the builder thread.
+      ExoMediaPlayer.getBuilderHandler().post(new Runnable() {
+        @Override public void run() {
+          // The chunk source refreshes live media playlists itself.
+          onSingleManifest(manifest);
+        }
+      });
+    }
+
+    @Override public void onManifestError(@NonNull Uri uri, @NonNull final IOException error) {
+      ExoMediaPlayer.getBuilderHandler().post(new Runnable() {
+        @Override public void run() {
+          onSingleManifestError(error);
+        }
+      });
+    }
+
     @Override
     public void onSingleManifest(HlsPlaylist manifest) {
       if (canceled) {
@@ -126,8 +148,9 @@ public class HlsRendererBuilder implements RendererBuilder {
       }
 
       Handler mainHandler = player.getMainHandler();
-      LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
-      DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
+      LoadControl loadControl =
+          new ToroLoadControl(SharedAllocator.with(context).newAllocator(), player);
+      BandwidthMeter bandwidthMeter = new ToroBandwidthMeter(context, mainHandler, null);
       PtsTimestampAdjusterProvider timestampAdjusterProvider = new PtsTimestampAdjusterProvider();
 
       boolean haveSubtitles = false;
@@ -163,12 +186,12 @@ public class HlsRendererBuilder implements RendererBuilder {
             ExoMediaPlayer.TYPE_AUDIO);
         audioRenderer = new EnhancedMediaCodecAudioTrackRenderer(
             new SampleSource[] {sampleSource, audioSampleSource}, MediaCodecSelector.DEFAULT, null,
-            true, player.getMainHandler(), player, AudioCapabilities.getCapabilities(context),
-            AudioManager.STREAM_MUSIC);
+            true, player.getMainHandler(), player,
+            AudioCapabilitiesMonitor.with(context).getCapabilities(), AudioManager.STREAM_MUSIC);
       } else {
         audioRenderer = new EnhancedMediaCodecAudioTrackRenderer(sampleSource,
             MediaCodecSelector.DEFAULT, null, true, player.getMainHandler(), player,
-            AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
+            AudioCapabilitiesMonitor.with(context).getCapabilities(), AudioManager.STREAM_MUSIC);
       }
 
       // Build the text renderer.
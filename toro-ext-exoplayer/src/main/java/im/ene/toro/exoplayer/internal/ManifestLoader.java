@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer.internal;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.hls.HlsMediaPlaylist;
+import com.google.android.exoplayer.smoothstreaming.SmoothStreamingManifest;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.UriLoadable;
+import im.ene.toro.ManifestCache;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Load and parse a manifest for {@link ManifestCache}, the same way a {@link
+ * com.google.android.exoplayer.util.ManifestFetcher} does.
+ */
+final class ManifestLoader<T> implements ManifestCache.Loader<T> {
+
+  private final Context context;
+  private final String userAgent;
+  private final UriLoadable.Parser<T> parser;
+
+  ManifestLoader(Context context, String userAgent, UriLoadable.Parser<T> parser) {
+    this.context = context;
+    this.userAgent = userAgent;
+    this.parser = parser;
+  }
+
+  @NonNull @Override public T load(@NonNull Uri uri) throws IOException {
+    UriLoadable<T> loadable =
+        new UriLoadable<>(uri.toString(), new DefaultUriDataSource(context, userAgent), parser);
+    try {
+      loadable.load();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+
+    T manifest = loadable.getResult();
+    if (manifest == null) {
+      throw new IOException("Empty manifest: " + uri);
+    }
+    return manifest;
+  }
+
+  @Override public long getTtlMs(@NonNull T manifest) {
+    return getManifestTtlMs(manifest);
+  }
+
+  // Live manifests are refreshed by the ManifestFetcher of the player. Don't cache them.
+  static long getManifestTtlMs(Object manifest) {
+    if (manifest instanceof MediaPresentationDescription) {
+      return ((MediaPresentationDescription) manifest).dynamic ? 0 : ManifestCache.TTL_FOREVER;
+    } else if (manifest instanceof SmoothStreamingManifest) {
+      return ((SmoothStreamingManifest) manifest).isLive ? 0 : ManifestCache.TTL_FOREVER;
+    } else if (manifest instanceof HlsMediaPlaylist) {
+      return ((HlsMediaPlaylist) manifest).live ? 0 : ManifestCache.TTL_FOREVER;
+    }
+
+    // Master playlists don't change, their media playlists are refreshed by the chunk source.
+    return ManifestCache.TTL_FOREVER;
+  }
+}
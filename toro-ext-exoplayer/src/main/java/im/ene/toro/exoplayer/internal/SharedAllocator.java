@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.ene.toro.exoplayer.internal;
+package im.ene.toro.exoplayer.internal;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import com.google.android.exoplayer.upstream.Allocation;
+import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+
+/**
+ * Process wide pool of buffer segments, shared by the renderer builders, so that segments released
+ * by a player are reused by the next one instead of being garbage collected and allocated again.
+ * Unused segments above {@link #MAX_SPARE_BYTES} are dropped, and all of them are dropped when the
+ * system runs low on memory.
+ *
+ * Each player gets its own {@link Allocator} view on the pool (see {@link #newAllocator()}), which
+ * counts its own allocations only, as LoadControls decide based on them.
+ */
+final class SharedAllocator implements ComponentCallbacks2 {
+
+  static final int SEGMENT_SIZE = 64 * 1024;
+  static final int MAX_SPARE_BYTES = 8 * 1024 * 1024;
+
+  private static volatile SharedAllocator sInstance;
+
+  static SharedAllocator with(Context context) {
+    if (sInstance == null) {
+      synchronized (SharedAllocator.class) {
+        if (sInstance == null) {
+          sInstance = new SharedAllocator();
+          context.getApplicationContext().registerComponentCallbacks(sInstance);
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  private final DefaultAllocator pool = new DefaultAllocator(SEGMENT_SIZE);
+
+  private SharedAllocator() {
+  }
+
+  Allocator newAllocator() {
+    return new PlayerAllocator();
+  }
+
+  // Keep at most MAX_SPARE_BYTES of unused segments.
+  void trimSpare() {
+    pool.trim(pool.getTotalBytesAllocated() + MAX_SPARE_BYTES);
+  }
+
+  @Override public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      pool.trim(0);
+    }
+  }
+
+  @Override public void onConfigurationChanged(Configuration newConfig) {
+    // Do nothing
+  }
+
+  @Override public void onLowMemory() {
+    pool.trim(0);
+  }
+
+  private final class PlayerAllocator implements Allocator {
+
+    // Guarded by this
+    private int allocatedBytes;
+
+    @Override public Allocation allocate() {
+      Allocation allocation = pool.allocate();
+      synchronized (this) {
+        allocatedBytes += SEGMENT_SIZE;
+      }
+      return allocation;
+    }
+
+    @Override public void release(Allocation allocation) {
+      pool.release(allocation);
+      onReleased(1);
+    }
+
+    @Override public void release(Allocation[] allocations) {
+      pool.release(allocations);
+      onReleased(allocations.length);
+      // Usually a whole buffer being cleared.
+      trimSpare();
+    }
+
+    @Override public void trim(int targetSize) {
+      // Segments are not owned by a single player, only drop what the pool doesn't need.
+      trimSpare();
+    }
+
+    @Override public synchronized int getTotalBytesAllocated() {
+      return allocatedBytes;
+    }
+
+    @Override public synchronized void blockWhileTotalBytesAllocatedExceeds(int limit)
+        throws InterruptedException {
+      while (allocatedBytes > limit) {
+        wait();
+      }
+    }
+
+    @Override public int getIndividualAllocationLength() {
+      return SEGMENT_SIZE;
+    }
+
+    private synchronized void onReleased(int count) {
+      allocatedBytes -= count * SEGMENT_SIZE;
+      notifyAll();
+    }
+  }
+}
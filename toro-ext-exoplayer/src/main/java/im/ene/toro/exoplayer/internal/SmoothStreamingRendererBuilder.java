@@ -18,15 +18,16 @@ package im.ene.toro.exoplayer.internal;
 import android.content.Context;
 import android.media.AudioManager;
 import android.media.MediaCodec;
+import android.net.Uri;
 import android.os.Handler;
-import com.google.android.exoplayer.DefaultLoadControl;
+import android.support.annotation.NonNull;
 import com.google.android.exoplayer.LoadControl;
 import com.google.android.exoplayer.MediaCodecSelector;
 import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.TrackRenderer;
-import com.google.android.exoplayer.audio.AudioCapabilities;
 import com.google.android.exoplayer.chunk.ChunkSampleSource;
 import com.google.android.exoplayer.chunk.ChunkSource;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
 import com.google.android.exoplayer.chunk.FormatEvaluator.AdaptiveEvaluator;
 import com.google.android.exoplayer.drm.DrmSessionManager;
 import com.google.android.exoplayer.drm.FrameworkMediaCrypto;
@@ -37,14 +38,16 @@ import com.google.android.exoplayer.smoothstreaming.DefaultSmoothStreamingTrackS
 import com.google.android.exoplayer.smoothstreaming.SmoothStreamingChunkSource;
 import com.google.android.exoplayer.smoothstreaming.SmoothStreamingManifest;
 import com.google.android.exoplayer.smoothstreaming.SmoothStreamingManifestParser;
+import com.google.android.exoplayer.smoothstreaming.SmoothStreamingTrackSelector;
 import com.google.android.exoplayer.text.TextTrackRenderer;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
-import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultHttpDataSource;
 import com.google.android.exoplayer.upstream.DefaultUriDataSource;
 import com.google.android.exoplayer.util.ManifestFetcher;
 import com.google.android.exoplayer.util.Util;
+import im.ene.toro.ManifestCache;
+import im.ene.toro.Toro;
 import im.ene.toro.exoplayer.internal.ExoMediaPlayer.RendererBuilder;
 import java.io.IOException;
 
@@ -53,7 +56,7 @@ import java.io.IOException;
  */
 public class SmoothStreamingRendererBuilder implements RendererBuilder {
 
-  private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+  private static final int BUFFER_SEGMENT_SIZE = SharedAllocator.SEGMENT_SIZE;
   private static final int VIDEO_BUFFER_SEGMENTS = 200;
   private static final int AUDIO_BUFFER_SEGMENTS = 54;
   private static final int TEXT_BUFFER_SEGMENTS = 2;
@@ -87,15 +90,18 @@ public class SmoothStreamingRendererBuilder implements RendererBuilder {
   }
 
   private static final class AsyncRendererBuilder
-      implements ManifestFetcher.ManifestCallback<SmoothStreamingManifest> {
+      implements ManifestFetcher.ManifestCallback<SmoothStreamingManifest>,
+      ManifestCache.Callback<SmoothStreamingManifest> {
 
     private final Context context;
     private final String userAgent;
     private final MediaDrmCallback drmCallback;
     private final ExoMediaPlayer player;
+    private final Uri manifestUri;
     private final ManifestFetcher<SmoothStreamingManifest> manifestFetcher;
 
     private boolean canceled;
+    private SmoothStreamingManifest manifest;
 
     public AsyncRendererBuilder(Context context, String userAgent, String url,
         MediaDrmCallback drmCallback, ExoMediaPlayer player) {
@@ -103,17 +109,22 @@ public class SmoothStreamingRendererBuilder implements RendererBuilder {
       this.userAgent = userAgent;
       this.drmCallback = drmCallback;
       this.player = player;
+      this.manifestUri = Uri.parse(url);
       SmoothStreamingManifestParser parser = new SmoothStreamingManifestParser();
       manifestFetcher =
           new ManifestFetcher<>(url, new DefaultHttpDataSource(userAgent, null), parser);
     }
 
     public void init() {
-      manifestFetcher.singleLoad(player.getMainHandler().getLooper(), this);
+      // Cached, or joining a load in flight, or loaded and cached for next players.
+      Toro.getManifestCache()
+          .load(manifestUri, SmoothStreamingManifest.class,
+              new ManifestLoader<>(context, userAgent, new SmoothStreamingManifestParser()), this);
     }
 
     public void cancel() {
       canceled = true;
+      Toro.getManifestCache().cancel(manifestUri, SmoothStreamingManifest.class, this);
     }
 
     @Override public void onSingleManifestError(IOException exception) {
@@ -124,14 +135,45 @@ public class SmoothStreamingRendererBuilder implements RendererBuilder {
       player.onRenderersError(exception);
     }
 
+    @Override public void onManifestLoaded(@NonNull Uri uri,
+        @NonNull final SmoothStreamingManifest manifest) {
+      // Delivered on main thread, build on the builder thread.
+      ExoMediaPlayer.getBuilderHandler().post(new Runnable() {
+        @Override public void run() {
+          if (canceled) {
+            return;
+          }
+
+          if (manifest.isLive) {
+            // Live manifests are refreshed by the fetcher, let it load one.
+            manifestFetcher.singleLoad(ExoMediaPlayer.getBuilderHandler().getLooper(),
+                AsyncRendererBuilder.this);
+          } else {
+            onSingleManifest(manifest);
+          }
+        }
+      });
+    }
+
+    @Override public void onManifestError(@NonNull Uri uri, @NonNull final IOException error) {
+      ExoMediaPlayer.getBuilderHandler().post(new Runnable() {
+        @Override public void run() {
+          onSingleManifestError(error);
+        }
+      });
+    }
+
     @Override public void onSingleManifest(SmoothStreamingManifest manifest) {
       if (canceled) {
         return;
       }
 
+      this.manifest = manifest;
+
       Handler mainHandler = player.getMainHandler();
-      LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
-      DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(mainHandler, player);
+      LoadControl loadControl =
+          new ToroLoadControl(SharedAllocator.with(context).newAllocator(), player);
+      BandwidthMeter bandwidthMeter = new ToroBandwidthMeter(context, mainHandler, player);
 
       // Check drm support if necessary.
       DrmSessionManager<FrameworkMediaCrypto> drmSessionManager = null;
@@ -153,9 +195,9 @@ public class SmoothStreamingRendererBuilder implements RendererBuilder {
 
       // Build the video renderer.
       DataSource videoDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
-      ChunkSource videoChunkSource = new SmoothStreamingChunkSource(manifestFetcher,
+      ChunkSource videoChunkSource = buildChunkSource(
           DefaultSmoothStreamingTrackSelector.newVideoInstance(context, true, false),
-          videoDataSource, new AdaptiveEvaluator(bandwidthMeter), LIVE_EDGE_LATENCY_MS);
+          videoDataSource, new AdaptiveEvaluator(bandwidthMeter));
       ChunkSampleSource videoSampleSource = new ChunkSampleSource(videoChunkSource, loadControl,
           VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
           ExoMediaPlayer.TYPE_VIDEO);
@@ -166,22 +208,22 @@ public class SmoothStreamingRendererBuilder implements RendererBuilder {
 
       // Build the audio renderer.
       DataSource audioDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
-      ChunkSource audioChunkSource = new SmoothStreamingChunkSource(manifestFetcher,
-          DefaultSmoothStreamingTrackSelector.newAudioInstance(), audioDataSource, null,
-          LIVE_EDGE_LATENCY_MS);
+      ChunkSource audioChunkSource =
+          buildChunkSource(DefaultSmoothStreamingTrackSelector.newAudioInstance(), audioDataSource,
+              null);
       ChunkSampleSource audioSampleSource = new ChunkSampleSource(audioChunkSource, loadControl,
           AUDIO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
           ExoMediaPlayer.TYPE_AUDIO);
       EnhancedMediaCodecAudioTrackRenderer audioRenderer =
           new EnhancedMediaCodecAudioTrackRenderer(audioSampleSource, MediaCodecSelector.DEFAULT,
               drmSessionManager, true, mainHandler, player,
-              AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
+              AudioCapabilitiesMonitor.with(context).getCapabilities(), AudioManager.STREAM_MUSIC);
 
       // Build the text renderer.
       DataSource textDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
-      ChunkSource textChunkSource = new SmoothStreamingChunkSource(manifestFetcher,
-          DefaultSmoothStreamingTrackSelector.newTextInstance(), textDataSource, null,
-          LIVE_EDGE_LATENCY_MS);
+      ChunkSource textChunkSource =
+          buildChunkSource(DefaultSmoothStreamingTrackSelector.newTextInstance(), textDataSource,
+              null);
       ChunkSampleSource textSampleSource = new ChunkSampleSource(textChunkSource, loadControl,
           TEXT_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, mainHandler, player,
           ExoMediaPlayer.TYPE_TEXT);
@@ -195,5 +237,16 @@ public class SmoothStreamingRendererBuilder implements RendererBuilder {
       renderers[ExoMediaPlayer.TYPE_TEXT] = textRenderer;
       player.onRenderers(renderers, bandwidthMeter);
     }
+
+    private ChunkSource buildChunkSource(SmoothStreamingTrackSelector trackSelector,
+        DataSource dataSource, FormatEvaluator formatEvaluator) {
+      if (manifestFetcher.getManifest() == null) {
+        // Manifest came from the cache, and is static.
+        return new SmoothStreamingChunkSource(manifest, trackSelector, dataSource, formatEvaluator);
+      }
+
+      return new SmoothStreamingChunkSource(manifestFetcher, trackSelector, dataSource,
+          formatEvaluator, LIVE_EDGE_LATENCY_MS);
+    }
   }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.ene.toro.exoplayer.internal;
+package im.ene.toro.exoplayer.internal;
+
+import android.content.Context;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
+import im.ene.toro.BandwidthEstimator;
+
+/**
+ * {@link DefaultBandwidthMeter} seeded by the persisted {@link BandwidthEstimator}: until its own
+ * transfers give an estimate, the one of the current network from previous sessions is returned,
+ * so that the first chunks of an adaptive stream aren't picked blindly. Its samples are fed back
+ * to the BandwidthEstimator, then to the player's listener if any.
+ */
+final class ToroBandwidthMeter implements BandwidthMeter {
+
+  private final BandwidthEstimator estimator;
+  private final DefaultBandwidthMeter delegate;
+
+  ToroBandwidthMeter(Context context, Handler eventHandler,
+      @Nullable final BandwidthMeter.EventListener eventListener) {
+    this.estimator = BandwidthEstimator.with(context);
+    this.delegate = new DefaultBandwidthMeter(eventHandler, new BandwidthMeter.EventListener() {
+      @Override public void onBandwidthSample(int elapsedMs, long bytes, long bitrate) {
+        estimator.addSample(bytes, elapsedMs);
+        if (eventListener != null) {
+          eventListener.onBandwidthSample(elapsedMs, bytes, bitrate);
+        }
+      }
+    });
+  }
+
+  @Override public long getBitrateEstimate() {
+    long estimate = delegate.getBitrateEstimate();
+    return estimate != NO_ESTIMATE ? estimate : estimator.getBitrateEstimate();
+  }
+
+  @Override public void onTransferStart() {
+    delegate.onTransferStart();
+  }
+
+  @Override public void onBytesTransferred(int bytesTransferred) {
+    delegate.onBytesTransferred(bytesTransferred);
+  }
+
+  @Override public void onTransferEnd() {
+    delegate.onTransferEnd();
+  }
+}
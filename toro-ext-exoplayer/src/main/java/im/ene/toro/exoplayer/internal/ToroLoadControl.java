@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package im.ene.toro.exoplayer.internal;
+package im.ene.toro.exoplayer.internal;
+
+import com.google.android.exoplayer.DefaultLoadControl;
+import com.google.android.exoplayer.LoadControl;
+import com.google.android.exoplayer.upstream.Allocator;
+import im.ene.toro.BufferBudget;
+import im.ene.toro.BufferProfile;
+import im.ene.toro.Toro;
+
+/**
+ * A {@link DefaultLoadControl} whose watermarks come from the {@link BufferProfile} of its player,
+ * and whose allocations are reported to the {@link BufferBudget} shared by all players. The
+ * player with playWhenReady set is the elected one, and has priority over the others.
+ */
+final class ToroLoadControl implements LoadControl {
+
+  private final Allocator allocator;
+  private final ExoMediaPlayer player;
+  private final BufferProfile profile;
+  private final BufferBudget budget;
+  private final DefaultLoadControl delegate;
+  // Playback thread
+  private int loaderCount;
+
+  ToroLoadControl(Allocator allocator, ExoMediaPlayer player) {
+    this.allocator = allocator;
+    this.player = player;
+    this.profile = player.getBufferProfile();
+    this.budget = Toro.getBufferBudget();
+    this.delegate = new DefaultLoadControl(allocator, null, null, profile.minBufferMs,
+        profile.maxBufferMs, DefaultLoadControl.DEFAULT_LOW_BUFFER_LOAD,
+        DefaultLoadControl.DEFAULT_HIGH_BUFFER_LOAD);
+  }
+
+  /**
+   * @param bufferSize the buffer size a loader asks for, in bytes.
+   * @param profile the profile of the player.
+   * @return the buffer size, capped by the profile.
+   */
+  static int capBufferSize(int bufferSize, BufferProfile profile) {
+    return profile.maxBytes > 0 ? Math.min(bufferSize, profile.maxBytes) : bufferSize;
+  }
+
+  @Override public void register(Object loader, int bufferSizeContribution) {
+    loaderCount++;
+    delegate.register(loader, capBufferSize(bufferSizeContribution, profile));
+  }
+
+  @Override public void unregister(Object loader) {
+    delegate.unregister(loader);
+    if (--loaderCount == 0) {
+      budget.release(this);
+    }
+  }
+
+  @Override public Allocator getAllocator() {
+    return delegate.getAllocator();
+  }
+
+  @Override public void trimAllocator() {
+    delegate.trimAllocator();
+  }
+
+  @Override public boolean update(Object loader, long playbackPositionUs, long nextLoadPositionUs,
+      boolean loading) {
+    // Always update the delegate, other loaders depend on the state of this one.
+    boolean shouldLoad = delegate.update(loader, playbackPositionUs, nextLoadPositionUs, loading);
+    int allocatedBytes = allocator.getTotalBytesAllocated();
+    boolean withinBudget = budget.requestLoad(this, allocatedBytes, player.isBufferPriority())
+        && (profile.maxBytes == 0 || allocatedBytes < profile.maxBytes);
+    if (!shouldLoad || withinBudget || nextLoadPositionUs == -1) {
+      return shouldLoad;
+    }
+
+    // Never starve a player below what it needs to play.
+    return nextLoadPositionUs - playbackPositionUs
+        < profile.bufferForPlaybackAfterRebufferMs * 1000L;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro.exoplayer2;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.Allocator;
+import im.ene.toro.ManifestCache;
+import im.ene.toro.Toro;
+import java.io.IOException;
+
+/**
+ * A DASH or SmoothStreaming MediaSource which gets its manifest through Toro's {@link
+ * ManifestCache}: from the cache, or by joining the load already in flight for it (e.g. started by
+ * {@link ExoPlayerHelper#prefetchManifest(android.content.Context, Uri, String)}), or by starting
+ * that load itself. The actual MediaSource is then built from the manifest by {@link
+ * #buildMediaSource(Object)}.
+ *
+ * @param <T> type of the manifest.
+ */
+abstract class CachedManifestMediaSource<T> implements MediaSource, ManifestCache.Callback<T> {
+
+  private final Uri uri;
+  private final Class<T> type;
+  private final ManifestCache.Loader<T> loader;
+
+  // Set on playback thread
+  private volatile Handler playbackHandler;
+  private ExoPlayer player;
+  private boolean isTopLevelSource;
+  private Listener listener;
+  private MediaSource mediaSource;
+  private volatile IOException error;
+
+  CachedManifestMediaSource(@NonNull Uri uri, @NonNull Class<T> type,
+      @NonNull ManifestCache.Loader<T> loader) {
+    this.uri = uri;
+    this.type = type;
+    this.loader = loader;
+  }
+
+  /**
+   * Called on playback thread.
+   *
+   * @param manifest the manifest, loaded or cached.
+   * @return the MediaSource to play, side-loading the manifest unless it is a live one.
+   */
+  @NonNull abstract MediaSource buildMediaSource(@NonNull T manifest);
+
+  @Override
+  public void prepareSource(ExoPlayer player, boolean isTopLevelSource, Listener listener) {
+    this.player = player;
+    this.isTopLevelSource = isTopLevelSource;
+    this.listener = listener;
+    this.error = null;
+    this.playbackHandler = new Handler();
+    Toro.getManifestCache().load(uri, type, loader, this);
+  }
+
+  // Main thread
+  @Override public void onManifestLoaded(@NonNull Uri uri, @NonNull final T manifest) {
+    final Handler handler = playbackHandler;
+    if (handler == null) {
+      return;
+    }
+
+    handler.post(new Runnable() {
+      @Override public void run() {
+        // Released, or prepared again by another player, meanwhile.
+        if (handler != playbackHandler) {
+          return;
+        }
+
+        mediaSource = buildMediaSource(manifest);
+        mediaSource.prepareSource(player, isTopLevelSource, listener);
+      }
+    });
+  }
+
+  // Main thread
+  @Override public void onManifestError(@NonNull Uri uri, @NonNull IOException error) {
+    this.error = error;
+  }
+
+  @Override public void maybeThrowSourceInfoRefreshError() throws IOException {
+    if (mediaSource != null) {
+      mediaSource.maybeThrowSourceInfoRefreshError();
+    } else if (error != null) {
+      throw error;
+    }
+  }
+
+  @Override public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+    return mediaSource.createPeriod(index, allocator, positionUs);
+  }
+
+  @Override public void releasePeriod(MediaPeriod mediaPeriod) {
+    mediaSource.releasePeriod(mediaPeriod);
+  }
+
+  @Override public void releaseSource() {
+    playbackHandler = null;
+    Toro.getManifestCache().cancel(uri, type, this);
+    if (mediaSource != null) {
+      mediaSource.releaseSource();
+      mediaSource = null;
+    }
+    player = null;
+    listener = null;
+  }
+}
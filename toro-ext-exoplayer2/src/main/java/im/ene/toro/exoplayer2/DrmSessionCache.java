@@ -0,0 +1,297 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.MediaDrm;
+import android.media.NotProvisionedException;
+import android.os.Build;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Base64;
+import android.util.Log;
+import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
+import com.google.android.exoplayer2.drm.FrameworkMediaDrm;
+import com.google.android.exoplayer2.drm.HttpMediaDrmCallback;
+import com.google.android.exoplayer2.drm.UnsupportedDrmException;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Make protected content start as fast as clear content:
+ *
+ * - License callbacks (and their http stacks) are reused per license server, instead of being
+ * built for each player.
+ * - Offline licenses (key set ids) can be stored per DRM scheme and content, with their expiry. A
+ * player of such content restores the keys instead of doing a license round-trip. Expired licenses
+ * are dropped. Players only request streaming licenses, so nothing is stored unless the app
+ * downloads an offline license itself and stores it here, see {@link #putOfflineLicense}.
+ * - Device provisioning of a DRM scheme can be done in advance, off the main thread, see {@link
+ * #prewarm(UUID)}.
+ *
+ * A {@link DrmSessionManager} itself is bound to the playback thread of its player, so a new one
+ * is still created per player.
+ */
+public final class DrmSessionCache {
+
+  private static final String TAG = "ToroLib@Drm";
+
+  private static final String PREF_NAME = "toro_drm_licenses";
+  private static final int MAX_CALLBACKS = 8;
+  private static final int PROVISION_TIMEOUT_MS = 10000;
+
+  private static volatile DrmSessionCache sInstance;
+
+  public static DrmSessionCache with(@NonNull Context context) {
+    if (sInstance == null) {
+      synchronized (DrmSessionCache.class) {
+        if (sInstance == null) {
+          sInstance = new DrmSessionCache(context.getApplicationContext());
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  private final Context context;
+  private final SharedPreferences licenses;
+  private final ExecutorService executor;
+  // Guarded by itself, players are built off the main thread.
+  private final Map<String, HttpMediaDrmCallback> callbacks =
+      new LinkedHashMap<String, HttpMediaDrmCallback>(MAX_CALLBACKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HttpMediaDrmCallback> eldest) {
+          return size() > MAX_CALLBACKS;
+        }
+      };
+  // Guarded by itself.
+  private final Set<UUID> provisionedSchemes = new HashSet<>();
+
+  private DrmSessionCache(Context context) {
+    this.context = context;
+    this.licenses = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override public Thread newThread(@NonNull Runnable runnable) {
+        Thread thread = new Thread(runnable, "Toro:Drm");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Build a {@link DrmSessionManager} for a player, reusing the license callback of this server
+   * and the offline license of this content if available. Can be called from any thread.
+   *
+   * @param uuid the DRM scheme.
+   * @param licenseUrl the license server url.
+   * @param keyRequestProperties properties to set on license requests, may be {@code null}.
+   * @param contentId the content id the offline license is stored with, or {@code null} to not
+   * restore any offline license.
+   * @param eventHandler the handler of DRM events.
+   * @return a new DrmSessionManager, or {@code null} if DRM is not supported (API < 18).
+   * @throws UnsupportedDrmException if the scheme is not supported.
+   */
+  @Nullable
+  public DrmSessionManager<FrameworkMediaCrypto> buildDrmSessionManager(@NonNull UUID uuid,
+      @NonNull String licenseUrl, @Nullable Map<String, String> keyRequestProperties,
+      @Nullable String contentId, @Nullable Handler eventHandler) throws UnsupportedDrmException {
+    if (Util.SDK_INT < 18) {
+      return null;
+    }
+
+    String callbackKey = licenseUrl + "#" + keyRequestProperties;
+    HttpMediaDrmCallback callback;
+    synchronized (callbacks) {
+      callback = callbacks.get(callbackKey);
+      if (callback == null) {
+        callback = new HttpMediaDrmCallback(licenseUrl,
+            ExoPlayerHelper.buildHttpDataSourceFactory(context, false), keyRequestProperties);
+        callbacks.put(callbackKey, callback);
+      }
+    }
+
+    DefaultDrmSessionManager<FrameworkMediaCrypto> drmSessionManager =
+        new DefaultDrmSessionManager<>(uuid, FrameworkMediaDrm.newInstance(uuid), callback, null,
+            eventHandler, null /* eventLogger */);
+    // A license server serves many contents, its url can't tell which license to restore.
+    byte[] keySetId = contentId != null ? getOfflineLicense(uuid, contentId) : null;
+    if (keySetId != null) {
+      // Restore the stored keys, the manager renews them if they are about to expire.
+      drmSessionManager.setMode(DefaultDrmSessionManager.MODE_PLAYBACK, keySetId);
+    }
+
+    synchronized (provisionedSchemes) {
+      provisionedSchemes.add(uuid);
+    }
+    return drmSessionManager;
+  }
+
+  /**
+   * Store the offline license of a content, e.g. downloaded using an {@code OfflineLicenseHelper}.
+   *
+   * @param uuid the DRM scheme the license was issued for.
+   * @param contentId the content id.
+   * @param keySetId the key set id of the offline license.
+   * @param expiresAtMs wall clock time the license expires at, in millisecond.
+   */
+  public void putOfflineLicense(@NonNull UUID uuid, @NonNull String contentId,
+      @NonNull byte[] keySetId, long expiresAtMs) {
+    licenses.edit()
+        .putString(toKey(uuid, contentId),
+            expiresAtMs + ":" + Base64.encodeToString(keySetId, Base64.NO_WRAP))
+        .apply();
+  }
+
+  /**
+   * @param uuid the DRM scheme.
+   * @param contentId the content id.
+   * @return the key set id of the stored offline license of this content, or {@code null} if
+   * there is none or it expired.
+   */
+  @Nullable public byte[] getOfflineLicense(@NonNull UUID uuid, @NonNull String contentId) {
+    String value = licenses.getString(toKey(uuid, contentId), null);
+    int separator = value != null ? value.indexOf(':') : -1;
+    if (separator < 0) {
+      return null;
+    }
+
+    try {
+      long expiresAtMs = Long.parseLong(value.substring(0, separator));
+      if (expiresAtMs > System.currentTimeMillis()) {
+        return Base64.decode(value.substring(separator + 1), Base64.NO_WRAP);
+      }
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "Malformed offline license: " + contentId, e);
+    }
+
+    removeOfflineLicense(uuid, contentId);
+    return null;
+  }
+
+  public void removeOfflineLicense(@NonNull UUID uuid, @NonNull String contentId) {
+    licenses.edit().remove(toKey(uuid, contentId)).apply();
+  }
+
+  // A key set id only makes sense to the DRM scheme which issued it.
+  private static String toKey(UUID uuid, String contentId) {
+    return uuid + "/" + contentId;
+  }
+
+  /**
+   * Provision the device for a DRM scheme in background, so that the first protected content
+   * doesn't pay for it. Does nothing if the scheme was used already.
+   *
+   * @param uuid the DRM scheme to prepare, e.g. {@link com.google.android.exoplayer2.C#WIDEVINE_UUID}.
+   */
+  public void prewarm(@NonNull final UUID uuid) {
+    if (Util.SDK_INT < 18) {
+      return;
+    }
+
+    synchronized (provisionedSchemes) {
+      if (!provisionedSchemes.add(uuid)) {
+        return;
+      }
+    }
+
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        provision(uuid);
+      }
+    });
+  }
+
+  // Worker thread
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2) private static void provision(UUID uuid) {
+    MediaDrm mediaDrm = null;
+    try {
+      if (!MediaDrm.isCryptoSchemeSupported(uuid)) {
+        return;
+      }
+
+      mediaDrm = new MediaDrm(uuid);
+      byte[] sessionId;
+      try {
+        sessionId = mediaDrm.openSession();
+      } catch (NotProvisionedException e) {
+        MediaDrm.ProvisionRequest request = mediaDrm.getProvisionRequest();
+        mediaDrm.provideProvisionResponse(executeProvisionRequest(request));
+        sessionId = mediaDrm.openSession();
+      }
+      mediaDrm.closeSession(sessionId);
+    } catch (Exception e) {
+      // Not fatal, the player will provision the device itself.
+      Log.w(TAG, "Failed to prewarm DRM scheme: " + uuid, e);
+    } finally {
+      if (mediaDrm != null) {
+        mediaDrm.release();
+      }
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  private static byte[] executeProvisionRequest(MediaDrm.ProvisionRequest request)
+      throws IOException {
+    URL url = new URL(request.getDefaultUrl() + "&signedRequest=" + new String(request.getData()));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setConnectTimeout(PROVISION_TIMEOUT_MS);
+      connection.setReadTimeout(PROVISION_TIMEOUT_MS);
+      connection.setRequestProperty("Content-Type", "application/octet-stream");
+      OutputStream out = connection.getOutputStream();
+      out.close();
+
+      InputStream in = connection.getInputStream();
+      try {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          response.write(buffer, 0, read);
+        }
+        return response.toByteArray();
+      } finally {
+        in.close();
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+}
@@ -19,28 +19,35 @@ package im.ene.toro.exoplayer2;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Handler;
+import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
+import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
-import com.google.android.exoplayer2.drm.FrameworkMediaDrm;
-import com.google.android.exoplayer2.drm.HttpMediaDrmCallback;
 import com.google.android.exoplayer2.drm.UnsupportedDrmException;
 import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
 import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
 import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.source.smoothstreaming.DefaultSsChunkSource;
 import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
+import com.google.android.exoplayer2.source.smoothstreaming.manifest.SsManifest;
+import com.google.android.exoplayer2.source.smoothstreaming.manifest.SsManifestParser;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Util;
+import im.ene.toro.ManifestCache;
+import im.ene.toro.Toro;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.util.Map;
@@ -52,7 +59,6 @@ import java.util.UUID;
 
 public class ExoPlayerHelper {
 
-  static final DefaultBandwidthMeter BANDWIDTH_METER = new DefaultBandwidthMeter();
   static final CookieManager DEFAULT_COOKIE_MANAGER;
 
   static {
@@ -64,17 +70,41 @@ public class ExoPlayerHelper {
     throw new RuntimeException("Meh");
   }
 
-  public static MediaSource buildMediaSource(Context context, Uri uri,
-      DataSource.Factory mediaDataSourceFactory, Handler mainHandler, String overrideExtension) {
+  /**
+   * Build the MediaSource of a Media. DASH and SmoothStreaming ones get their manifest through
+   * Toro's {@link ManifestCache}, see {@link CachedManifestMediaSource}.
+   */
+  public static MediaSource buildMediaSource(Context context, final Uri uri,
+      DataSource.Factory mediaDataSourceFactory, final Handler mainHandler,
+      String overrideExtension) {
     int type = Util.inferContentType(
         !TextUtils.isEmpty(overrideExtension) ? "." + overrideExtension : uri.getLastPathSegment());
+    final DataSource.Factory manifestDataSourceFactory = buildDataSourceFactory(context, false);
     switch (type) {
       case C.TYPE_SS:
-        return new SsMediaSource(uri, buildDataSourceFactory(context, false),
-            new DefaultSsChunkSource.Factory(mediaDataSourceFactory), mainHandler, null /* eventLogger */);
+        final DefaultSsChunkSource.Factory ssChunkSourceFactory =
+            new DefaultSsChunkSource.Factory(mediaDataSourceFactory);
+        return new CachedManifestMediaSource<SsManifest>(uri, SsManifest.class,
+            buildSsManifestLoader(manifestDataSourceFactory)) {
+          @NonNull @Override MediaSource buildMediaSource(@NonNull SsManifest manifest) {
+            // Live manifests are refreshed by the source itself, which can't be side-loaded then.
+            return manifest.isLive ? new SsMediaSource(uri, manifestDataSourceFactory,
+                ssChunkSourceFactory, mainHandler, null /* eventLogger */)
+                : new SsMediaSource(manifest, ssChunkSourceFactory, mainHandler, null);
+          }
+        };
       case C.TYPE_DASH:
-        return new DashMediaSource(uri, buildDataSourceFactory(context, false),
-            new DefaultDashChunkSource.Factory(mediaDataSourceFactory), mainHandler, null /* eventLogger */);
+        final DefaultDashChunkSource.Factory dashChunkSourceFactory =
+            new DefaultDashChunkSource.Factory(mediaDataSourceFactory);
+        return new CachedManifestMediaSource<DashManifest>(uri, DashManifest.class,
+            buildDashManifestLoader(manifestDataSourceFactory)) {
+          @NonNull @Override MediaSource buildMediaSource(@NonNull DashManifest manifest) {
+            // Dynamic, i.e. live, manifests neither.
+            return manifest.dynamic ? new DashMediaSource(uri, manifestDataSourceFactory,
+                dashChunkSourceFactory, mainHandler, null /* eventLogger */)
+                : new DashMediaSource(manifest, dashChunkSourceFactory, mainHandler, null);
+          }
+        };
       case C.TYPE_HLS:
         return new HlsMediaSource(uri, mediaDataSourceFactory, mainHandler, null /* eventLogger */);
       case C.TYPE_OTHER:
@@ -86,37 +116,144 @@ public class ExoPlayerHelper {
     }
   }
 
+  /**
+   * Load and parse the manifest of a DASH or SmoothStreaming Media in background, so that its
+   * player doesn't need to. Does nothing for other Media types. Must be called from main thread.
+   *
+   * @param context the Context.
+   * @param uri uri of the Media.
+   * @param overrideExtension the extension used to infer the Media type, may be {@code null}.
+   */
+  public static void prefetchManifest(Context context, Uri uri, String overrideExtension) {
+    int type = Util.inferContentType(
+        !TextUtils.isEmpty(overrideExtension) ? "." + overrideExtension : uri.getLastPathSegment());
+    DataSource.Factory factory = buildDataSourceFactory(context, false);
+    switch (type) {
+      case C.TYPE_SS:
+        Toro.getManifestCache().load(uri, SsManifest.class, buildSsManifestLoader(factory), null);
+        break;
+      case C.TYPE_DASH:
+        Toro.getManifestCache()
+            .load(uri, DashManifest.class, buildDashManifestLoader(factory), null);
+        break;
+      default:
+        break;
+    }
+  }
+
+  static ManifestCache.Loader<SsManifest> buildSsManifestLoader(
+      final DataSource.Factory factory) {
+    return new ManifestCache.Loader<SsManifest>() {
+      @NonNull @Override public SsManifest load(@NonNull Uri uri) throws IOException {
+        return loadManifest(factory, uri, new SsManifestParser());
+      }
+
+      @Override public long getTtlMs(@NonNull SsManifest manifest) {
+        return getManifestTtlMs(manifest);
+      }
+    };
+  }
+
+  static ManifestCache.Loader<DashManifest> buildDashManifestLoader(
+      final DataSource.Factory factory) {
+    return new ManifestCache.Loader<DashManifest>() {
+      @NonNull @Override public DashManifest load(@NonNull Uri uri) throws IOException {
+        return loadManifest(factory, uri, new DashManifestParser());
+      }
+
+      @Override public long getTtlMs(@NonNull DashManifest manifest) {
+        return getManifestTtlMs(manifest);
+      }
+    };
+  }
+
+  // Live manifests are updated by the player itself, and can't be side-loaded. Don't cache them.
+  static long getManifestTtlMs(Object manifest) {
+    if (manifest instanceof DashManifest) {
+      return ((DashManifest) manifest).dynamic ? 0 : ManifestCache.TTL_FOREVER;
+    } else if (manifest instanceof SsManifest) {
+      return ((SsManifest) manifest).isLive ? 0 : ManifestCache.TTL_FOREVER;
+    }
+
+    return 0;
+  }
+
+  // Worker thread
+  static <T> T loadManifest(DataSource.Factory factory, Uri uri,
+      ParsingLoadable.Parser<T> parser) throws IOException {
+    ParsingLoadable<T> loadable =
+        new ParsingLoadable<>(factory.createDataSource(), uri, C.DATA_TYPE_MANIFEST, parser);
+    try {
+      loadable.load();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+
+    T manifest = loadable.getResult();
+    if (manifest == null) {
+      throw new IOException("Empty manifest: " + uri);
+    }
+    return manifest;
+  }
+
+  /**
+   * @param typeString the DRM type of a {@link DrmMedia}: "widevine", "playready" or a scheme uuid.
+   * @return the uuid of the DRM scheme.
+   * @throws ParserException if the type is not supported.
+   */
+  static UUID getDrmUuid(String typeString) throws ParserException {
+    switch (typeString.toLowerCase()) {
+      case "widevine":
+        return C.WIDEVINE_UUID;
+      case "playready":
+        return C.PLAYREADY_UUID;
+      default:
+        try {
+          return UUID.fromString(typeString);
+        } catch (RuntimeException e) {
+          throw new ParserException("Unsupported drm type: " + typeString);
+        }
+    }
+  }
+
   public static DrmSessionManager<FrameworkMediaCrypto> buildDrmSessionManager(Context context,
       UUID uuid, String licenseUrl, Map<String, String> keyRequestProperties, Handler mainHandler)
       throws UnsupportedDrmException {
-    if (Util.SDK_INT < 18) {
-      return null;
-    }
+    return buildDrmSessionManager(context, uuid, licenseUrl, keyRequestProperties, null,
+        mainHandler);
+  }
 
-    HttpMediaDrmCallback drmCallback =
-        new HttpMediaDrmCallback(licenseUrl, buildHttpDataSourceFactory(context, false),
-            keyRequestProperties);
-    return new DefaultDrmSessionManager<>(uuid, FrameworkMediaDrm.newInstance(uuid), drmCallback,
-        null, mainHandler, null /* eventLogger */);
+  /**
+   * Same as {@link #buildDrmSessionManager(Context, UUID, String, Map, Handler)}, but restores the
+   * offline license stored for {@code contentId} if any. See {@link DrmSessionCache}.
+   */
+  public static DrmSessionManager<FrameworkMediaCrypto> buildDrmSessionManager(Context context,
+      UUID uuid, String licenseUrl, Map<String, String> keyRequestProperties, String contentId,
+      Handler mainHandler) throws UnsupportedDrmException {
+    return DrmSessionCache.with(context)
+        .buildDrmSessionManager(uuid, licenseUrl, keyRequestProperties, contentId, mainHandler);
   }
 
   static HttpDataSource.Factory buildHttpDataSourceFactory(Context context,
-      DefaultBandwidthMeter bandwidthMeter) {
+      ToroBandwidthMeter bandwidthMeter) {
     return new DefaultHttpDataSourceFactory(Util.getUserAgent(context, "Toro"), bandwidthMeter);
   }
 
   static DataSource.Factory buildDataSourceFactory(Context context,
-      DefaultBandwidthMeter bandwidthMeter) {
+      ToroBandwidthMeter bandwidthMeter) {
     return new DefaultDataSourceFactory(context, bandwidthMeter,
         buildHttpDataSourceFactory(context, bandwidthMeter));
   }
 
   static HttpDataSource.Factory buildHttpDataSourceFactory(Context context,
       boolean useBandwidthMeter) {
-    return buildHttpDataSourceFactory(context, useBandwidthMeter ? BANDWIDTH_METER : null);
+    return buildHttpDataSourceFactory(context,
+        useBandwidthMeter ? ToroBandwidthMeter.with(context) : null);
   }
 
   static DataSource.Factory buildDataSourceFactory(Context context, boolean useBandwidthMeter) {
-    return buildDataSourceFactory(context, useBandwidthMeter ? BANDWIDTH_METER : null);
+    return buildDataSourceFactory(context,
+        useBandwidthMeter ? ToroBandwidthMeter.with(context) : null);
   }
 }
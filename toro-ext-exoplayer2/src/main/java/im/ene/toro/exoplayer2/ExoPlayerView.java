@@ -18,43 +18,64 @@ package im.ene.toro.exoplayer2;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.SurfaceTexture;
+import android.net.Uri;
 import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.AttrRes;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.TextureView;
+import android.view.View;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
+import android.widget.ImageView;
 import android.widget.Toast;
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
 import com.google.android.exoplayer2.drm.UnsupportedDrmException;
 import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
 import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
 import com.google.android.exoplayer2.source.BehindLiveWindowException;
+import com.google.android.exoplayer2.source.LoopingMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.AdaptiveVideoTrackSelection;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
-import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.ui.AspectRatioFrameLayout;
 import com.google.android.exoplayer2.ui.SimpleExoPlayerView;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.VideoRendererEventListener;
+import im.ene.toro.BufferBudget;
+import im.ene.toro.BufferProfile;
+import im.ene.toro.Toro;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
-import static im.ene.toro.exoplayer2.ExoPlayerHelper.BANDWIDTH_METER;
 
 /**
  * Created by eneim on 2/7/17.
@@ -62,8 +83,102 @@ import static im.ene.toro.exoplayer2.ExoPlayerHelper.BANDWIDTH_METER;
 
 public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListener {
 
+  @IntDef({ QUALITY_FULL, QUALITY_PREVIEW }) @Retention(RetentionPolicy.SOURCE)
+  public @interface Quality {
+  }
+
+  /**
+   * Select tracks and buffer as usual.
+   */
+  public static final int QUALITY_FULL = 0;
+  /**
+   * Start on the lowest adequate rendition with a small buffer, for cheap autoplay in a list.
+   */
+  public static final int QUALITY_PREVIEW = 1;
+
+  /**
+   * How long a retained surface, and the player bound to it, are kept once this View is detached.
+   * See {@link #setSurfaceRetentionEnabled(boolean)}.
+   */
+  public static final long SURFACE_RETENTION_TIMEOUT_MS = 5000;
+
+  // Video bitrate cap used in preview quality, on top of the View size constraint.
+  static final int PREVIEW_MAX_VIDEO_BITRATE = 800000;
+
+  // Builds the costly parts of new players, off the main thread.
+  private static final ExecutorService initExecutor =
+      Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override public Thread newThread(@NonNull Runnable runnable) {
+          Thread thread = new Thread(runnable, "Toro:PlayerInit");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  private static final class Components {
+
+    @Nullable final DrmSessionManager<FrameworkMediaCrypto> drmSessionManager;
+    final FrameRateCappedTrackSelectionFactory videoTrackSelectionFactory;
+    final DefaultTrackSelector trackSelector;
+    final ToroLoadControl loadControl;
+
+    Components(@Nullable DrmSessionManager<FrameworkMediaCrypto> drmSessionManager,
+        FrameRateCappedTrackSelectionFactory videoTrackSelectionFactory,
+        DefaultTrackSelector trackSelector, ToroLoadControl loadControl) {
+      this.drmSessionManager = drmSessionManager;
+      this.videoTrackSelectionFactory = videoTrackSelectionFactory;
+      this.trackSelector = trackSelector;
+      this.loadControl = loadControl;
+    }
+  }
+
   private final SimpleExoPlayerView playerView;
   private final Handler mainHandler = new Handler();
+  // Covers the player until its first frame is rendered. We show the poster frame on it.
+  @Nullable private final View shutterView;
+  // Sits right above the shutter, in the frame laid out at the aspect ratio of the video.
+  @Nullable private final ImageView posterView;
+  private String posterMediaId;
+  private final PosterFrameCache.Callback posterCallback = new PosterFrameCache.Callback() {
+    @Override public void onPosterFrameLoaded(@NonNull String mediaId, @NonNull Bitmap frame) {
+      if (mediaId.equals(posterMediaId)) {
+        setPosterFrame(frame);
+      }
+    }
+  };
+
+  // The shutter is hidden once the first frame is rendered, so is the poster frame.
+  private final VideoRendererEventListener firstFrameListener = new VideoRendererEventListener() {
+    @Override public void onVideoEnabled(DecoderCounters counters) {
+      // Do nothing
+    }
+
+    @Override public void onVideoDecoderInitialized(String decoderName,
+        long initializedTimestampMs, long initializationDurationMs) {
+      // Do nothing
+    }
+
+    @Override public void onVideoInputFormatChanged(Format format) {
+      // Do nothing
+    }
+
+    @Override public void onDroppedFrames(int count, long elapsedMs) {
+      // Do nothing
+    }
+
+    @Override public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees,
+        float pixelWidthHeightRatio) {
+      // Do nothing
+    }
+
+    @Override public void onRenderedFirstFrame(Surface surface) {
+      updatePosterVisibility();
+    }
+
+    @Override public void onVideoDisabled(DecoderCounters counters) {
+      // Do nothing
+    }
+  };
 
   PlayerCallback playerCallback;
 
@@ -80,20 +195,138 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
     super(context, attrs, defStyleAttr);
     playerView = new SimpleExoPlayerView(context, attrs, defStyleAttr);
     addView(playerView, 0);
+    shutterView = playerView.findViewById(com.google.android.exoplayer2.R.id.exo_shutter);
+    View contentFrame =
+        playerView.findViewById(com.google.android.exoplayer2.R.id.exo_content_frame);
+    if (contentFrame instanceof ViewGroup && shutterView != null) {
+      posterView = new ImageView(context);
+      // The frame takes the aspect ratio of the video once known, fit the poster in it meanwhile.
+      posterView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+      posterView.setVisibility(GONE);
+      ViewGroup frame = (ViewGroup) contentFrame;
+      frame.addView(posterView, frame.indexOfChild(shutterView) + 1,
+          new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+    } else {
+      posterView = null;
+    }
+    // SimpleExoPlayerView adds its SurfaceView or TextureView at the bottom of content frame.
+    if (contentFrame instanceof ViewGroup
+        && ((ViewGroup) contentFrame).getChildAt(0) instanceof SurfaceView) {
+      ((SurfaceView) ((ViewGroup) contentFrame).getChildAt(0)).getHolder()
+          .addCallback(surfaceCallback);
+    }
   }
 
+  private final SurfaceHolder.Callback surfaceCallback = new SurfaceHolder.Callback() {
+    @Override public void surfaceCreated(SurfaceHolder holder) {
+      setBackgrounded(false);
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+      // Do nothing
+    }
+
+    @Override public void surfaceDestroyed(SurfaceHolder holder) {
+      setBackgrounded(true);
+    }
+  };
+
+  // Set on our TextureView, if any, on top of the one the player sets there.
+  private final class TextureListener implements TextureView.SurfaceTextureListener {
+
+    final TextureView.SurfaceTextureListener delegate;
+
+    TextureListener(TextureView.SurfaceTextureListener delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+      delegate.onSurfaceTextureAvailable(surface, width, height);
+      setBackgrounded(false);
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+      delegate.onSurfaceTextureSizeChanged(surface, width, height);
+    }
+
+    @Override public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+      if (surfaceRetentionEnabled) {
+        // The player keeps its Surface on this texture, given back to the TextureView once
+        // re-attached, so the decoder output doesn't need to be re-configured.
+        retainedSurfaceTexture = surface;
+        SimpleExoPlayer player = getPlayer();
+        if (player != null) {
+          player.setPlayWhenReady(false);
+        }
+        return false;
+      }
+
+      // Same as a destroyed SurfaceView: audio may go on without video.
+      setBackgrounded(true);
+      return delegate.onSurfaceTextureDestroyed(surface);
+    }
+
+    @Override public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+      delegate.onSurfaceTextureUpdated(surface);
+    }
+  }
+
+  // Not re-attached in time, so the retained surface and its player are dropped.
+  private final Runnable retentionTimeout = new Runnable() {
+    @Override public void run() {
+      releasePlayer();
+    }
+  };
+
   private MediaSource mediaSource;
+  // The Media current mediaSource was built for, null if it was set as a MediaSource.
+  @Nullable private Media media;
 
   private DefaultTrackSelector trackSelector;
+  private FrameRateCappedTrackSelectionFactory videoTrackSelectionFactory;
+  private float maxVideoFrameRate = Format.NO_VALUE;
+  private ToroLoadControl loadControl;
+  private BufferProfile bufferProfile = BufferProfile.FULL_SCREEN;
+  @Quality private int quality = QUALITY_FULL;
+  private boolean muted;
+  private boolean backgroundAudioEnabled;
+  private boolean backgrounded;
+  @Nullable private String drmContentId;
+  private boolean surfaceRetentionEnabled;
+  private SurfaceTexture retainedSurfaceTexture;
   private boolean playerNeedsSource;
   private boolean shouldAutoPlay;
+  private boolean loopingEnabled;
+  // The MediaSource current player loops, if it was prepared with looping enabled.
+  @Nullable private LoopedMediaSource loopedSource;
   private int resumeWindow;
   private long resumePosition;
+  private boolean initializing;
+  private MediaSource initializingSource;
+  private int initGeneration;
 
   // public methods //
 
+  /**
+   * Play a Media, reading through the {@link MediaCache}. Its MediaSource is reused from the
+   * {@link MediaSourceCache}, so setting the same Media again doesn't resolve it again.
+   */
   public void setMedia(Media media, boolean shouldAutoPlay) throws ParserException {
-    setMedia(media, shouldAutoPlay, ExoPlayerHelper.buildDataSourceFactory(getContext(), true));
+    setMediaSource(MediaSourceCache.acquire(getContext(), media, this), shouldAutoPlay);
+    this.media = media;
+  }
+
+  /**
+   * Same as {@link #setMedia(Media, boolean)}, but the new player will be prepared at {@code
+   * startPosition}, see {@link #setMediaSource(MediaSource, boolean, long)}.
+   */
+  public void setMedia(Media media, boolean shouldAutoPlay, long startPosition)
+      throws ParserException {
+    setMediaSource(MediaSourceCache.acquire(getContext(), media, this), shouldAutoPlay,
+        startPosition);
+    this.media = media;
   }
 
   public void setMedia(Media media, boolean shouldAutoPlay,
@@ -102,6 +335,7 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
         ExoPlayerHelper.buildMediaSource(getContext(), media.getMediaUri(), mediaDataSourceFactory,
             mainHandler, null);
     setMediaSource(mediaSource, shouldAutoPlay);
+    this.media = media;
   }
 
   public void setMediaSource(MediaSource source, boolean shouldAutoPlay) throws ParserException {
@@ -109,11 +343,59 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
       return;
     }
 
+    if (this.mediaSource != null) {
+      // Current player moves on to the new MediaSource, others can reuse the previous one.
+      MediaSourceCache.release(this, this.mediaSource);
+      playerNeedsSource = true;
+    }
+
     this.mediaSource = source;
+    this.media = null;
     this.shouldAutoPlay = shouldAutoPlay;
+    if (source instanceof DrmMedia) {
+      // Provision the device while the player is built, if not done yet.
+      DrmSessionCache.with(getContext())
+          .prewarm(ExoPlayerHelper.getDrmUuid(((DrmMedia) source).getType()));
+    }
     initializePlayer();
   }
 
+  /**
+   * Same as {@link #setMediaSource(MediaSource, boolean)}, but the new player will be prepared at
+   * {@code startPosition}, so it only buffers from there.
+   *
+   * @param source the MediaSource to prepare.
+   * @param shouldAutoPlay Immediately start playback when Ready.
+   * @param startPosition position to start from, or {@link C#TIME_UNSET} for the default position.
+   * @throws ParserException if the DRM type of {@code source} is not supported.
+   */
+  public void setMediaSource(MediaSource source, boolean shouldAutoPlay, long startPosition)
+      throws ParserException {
+    if (source == null || source.equals(this.mediaSource)) { // including null
+      return;
+    }
+
+    if (startPosition == C.TIME_UNSET) {
+      clearResumePosition();
+    } else {
+      resumeWindow = 0;
+      resumePosition = Math.max(0, startPosition);
+    }
+
+    setMediaSource(source, shouldAutoPlay);
+  }
+
+  /**
+   * Set the id of the content of next players, so that a protected content restores its offline
+   * license if one is stored with this id for its DRM scheme. Toro doesn't download offline
+   * licenses itself, see {@link DrmSessionCache#putOfflineLicense}.
+   *
+   * @param drmContentId id of the content, or {@code null} to not restore any offline license.
+   */
+  public void setDrmContentId(@Nullable String drmContentId) {
+    this.drmContentId = drmContentId;
+  }
+
   public void setPlayerCallback(PlayerCallback playerCallback) {
     this.playerCallback = playerCallback;
   }
@@ -146,6 +428,218 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
     playerView.setDefaultArtwork(defaultArtwork);
   }
 
+  /**
+   * Show a frame of the Media until the player renders its first frame, instead of a black tile.
+   *
+   * @param frame the frame to show, or {@code null} to show the default black shutter.
+   */
+  public void setPosterFrame(@Nullable Bitmap frame) {
+    if (posterView == null) {
+      return;
+    }
+
+    posterView.setImageBitmap(frame);
+    updatePosterVisibility();
+  }
+
+  private void updatePosterVisibility() {
+    if (posterView == null || shutterView == null) {
+      return;
+    }
+
+    boolean covered = shutterView.getVisibility() == VISIBLE;
+    posterView.setVisibility(covered && posterView.getDrawable() != null ? VISIBLE : GONE);
+  }
+
+  /**
+   * Show the poster frame of a Media, from {@link PosterFrameCache} if available or extracted in
+   * background otherwise. The black shutter is shown meanwhile.
+   *
+   * @param mediaId the Media's id, see {@link im.ene.toro.ToroPlayer#getMediaId()}.
+   * @param uri the Media's uri, used to extract the frame if it is not cached.
+   */
+  public void loadPosterFrame(@NonNull String mediaId, @NonNull Uri uri) {
+    PosterFrameCache cache = PosterFrameCache.with(getContext());
+    if (posterMediaId != null && !posterMediaId.equals(mediaId)) {
+      cache.cancel(posterMediaId, posterCallback);
+    }
+
+    posterMediaId = mediaId;
+    int width = getWidth() > 0 ? getWidth() : getResources().getDisplayMetrics().widthPixels;
+    int height = getHeight() > 0 ? getHeight() : width * 9 / 16;
+    Bitmap frame = cache.get(mediaId, width, height);
+    setPosterFrame(frame);
+    if (frame == null) {
+      cache.load(mediaId, uri, width, height, posterCallback);
+    }
+  }
+
+  /**
+   * Keep replaying current Media without releasing the player. If set before preparation, the
+   * Media is wrapped in a {@link LoopingMediaSource} so the next loop is buffered in advance.
+   * Otherwise the player seeks back to the start in place once it ends. Disabling it on a player
+   * prepared with looping re-prepares that player at its current position, dropping its buffer.
+   *
+   * @param loopingEnabled {@code true} to loop current Media, {@code false} otherwise.
+   */
+  public void setLoopingEnabled(boolean loopingEnabled) {
+    this.loopingEnabled = loopingEnabled;
+    maybeStopLooping();
+  }
+
+  public boolean isLoopingEnabled() {
+    return loopingEnabled;
+  }
+
+  /**
+   * Limit the frame rate of selected video tracks, e.g. 30fps for feed playback. Tracks over the
+   * limit are only used if nothing else is available. Applied from the next track selection.
+   *
+   * @param maxVideoFrameRate the frame rate cap, or {@link Format#NO_VALUE} for no cap.
+   */
+  public void setMaxVideoFrameRate(float maxVideoFrameRate) {
+    this.maxVideoFrameRate = maxVideoFrameRate;
+    if (videoTrackSelectionFactory != null) {
+      videoTrackSelectionFactory.setMaxFrameRate(maxVideoFrameRate);
+    }
+  }
+
+  public float getMaxVideoFrameRate() {
+    return maxVideoFrameRate;
+  }
+
+  /**
+   * Switch the quality profile of this View. Switching from {@link #QUALITY_PREVIEW} to {@link
+   * #QUALITY_FULL} (e.g. when User engages with the Video) reuses current player: already buffered
+   * media keeps playing and better renditions are loaded from there on.
+   *
+   * @param quality the quality profile to use.
+   */
+  public void setQuality(@Quality int quality) {
+    if (this.quality == quality) {
+      return;
+    }
+
+    this.quality = quality;
+    if (loadControl != null) {
+      loadControl.setPreviewMode(quality == QUALITY_PREVIEW);
+    }
+
+    if (trackSelector != null) {
+      trackSelector.setParameters(buildTrackSelectorParameters(getWidth(), getHeight()));
+    }
+  }
+
+  @Quality public int getQuality() {
+    return quality;
+  }
+
+  /**
+   * Set the buffering targets of this View's player, e.g. {@link BufferProfile#PREFETCH} for a
+   * player prepared ahead of time. Applied from the next loading decision, without re-preparing.
+   * {@link #QUALITY_PREVIEW} uses {@link BufferProfile#FEED_PREVIEW} regardless of this profile.
+   *
+   * @param bufferProfile the profile to use.
+   */
+  public void setBufferProfile(@NonNull BufferProfile bufferProfile) {
+    this.bufferProfile = bufferProfile;
+    if (loadControl != null) {
+      loadControl.setProfile(bufferProfile);
+    }
+  }
+
+  @NonNull public BufferProfile getBufferProfile() {
+    return bufferProfile;
+  }
+
+  /**
+   * Muted playback disables the audio renderers at track selection time, so that audio is not
+   * decoded at all. Setting volume to 0 mutes too. Un-muting, or setting a non-zero volume,
+   * re-enables them without re-preparing the player. View holders mute players autoplaying in
+   * {@link im.ene.toro.AutoplayPolicy#MODE_PREVIEW}.
+   *
+   * @param muted {@code true} to disable audio, {@code false} otherwise.
+   */
+  public void setMuted(boolean muted) {
+    if (this.muted == muted) {
+      return;
+    }
+
+    this.muted = muted;
+    updateAudioRenderers();
+  }
+
+  public boolean isMuted() {
+    return muted;
+  }
+
+  /**
+   * Keep playing audio when the video surface goes away (e.g. the window is hidden), with the
+   * video renderers disabled so video is not decoded meanwhile. Video is enabled again, without
+   * re-preparing the player, once the surface is back.
+   *
+   * @param enabled {@code true} to keep audio playing in background, {@code false} otherwise.
+   */
+  public void setBackgroundAudioEnabled(boolean enabled) {
+    this.backgroundAudioEnabled = enabled;
+    if (!enabled) {
+      setBackgrounded(false);
+    }
+  }
+
+  public boolean isBackgroundAudioEnabled() {
+    return backgroundAudioEnabled;
+  }
+
+  public boolean isBackgrounded() {
+    return backgrounded;
+  }
+
+  /**
+   * @return {@code true} if this View is detached but still holds its surface and player.
+   */
+  public final boolean isSurfaceRetained() {
+    return retainedSurfaceTexture != null;
+  }
+
+  /**
+   * Called once this View is rebound, e.g. after being recycled with a retained surface. The
+   * retained player is kept if it plays this Media, released otherwise.
+   *
+   * @param media the Media this View is bound to, or {@code null} if unknown.
+   * @return {@code true} if a retained player of this Media is kept, {@code false} otherwise.
+   */
+  public final boolean keepRetainedPlayer(@Nullable Media media) {
+    if (retainedSurfaceTexture == null) {
+      return false;
+    }
+
+    if (media != null && media.equals(this.media) && playerView.getPlayer() != null) {
+      return true;
+    }
+
+    releasePlayer();
+    return false;
+  }
+
+  /**
+   * Keep the video surface, and current player bound to it, while this View is detached from
+   * Window (e.g. an item scrolled off screen, cached or recycled by RecyclerView). Once
+   * re-attached, the same surface is reused so neither the surface nor the decoder output need to
+   * be re-created. A recycled View keeps them if it is rebound to the same Media, see {@link
+   * #keepRetainedPlayer(Media)}. Only applies to TextureView; a SurfaceView's surface is always
+   * destroyed with its Window. The surface is released with the player, or once detached for
+   * longer than {@link #SURFACE_RETENTION_TIMEOUT_MS}.
+   *
+   * @param enabled {@code true} to retain the surface across detach and re-attach.
+   */
+  public void setSurfaceRetentionEnabled(boolean enabled) {
+    this.surfaceRetentionEnabled = enabled;
+    if (!enabled && retainedSurfaceTexture != null && !ViewCompat.isAttachedToWindow(this)) {
+      releasePlayer();
+    }
+  }
+
   public void setUseController(boolean useController) {
     playerView.setUseController(useController);
   }
@@ -154,6 +648,14 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
     return playerView.getUseController();
   }
 
+  /**
+   * Build the player of current MediaSource and prepare it. The costly parts (DRM session manager,
+   * track selector, load control) are built on a worker thread, so this returns before the player
+   * exists: {@link PlayerCallback#onPlayerInitialized()} is called once it is created and
+   * prepared, see {@link #isInitializing()}. An existing player is prepared right away.
+   *
+   * @throws ParserException if the DRM type of current MediaSource is not supported.
+   */
   public final void initializePlayer() throws ParserException {
     if (mediaSource == null) {
       throw new IllegalStateException("Media Source must not be null.");
@@ -161,71 +663,190 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
 
     SimpleExoPlayer player = playerView.getPlayer();
     if (player == null) {
-      UUID drmSchemeUuid =
-          mediaSource instanceof DrmMedia ? getDrmUuid(((DrmMedia) mediaSource).getType()) : null;
-      DrmSessionManager<FrameworkMediaCrypto> drmSessionManager = null;
-      if (drmSchemeUuid != null) {
-        String drmLicenseUrl = ((DrmMedia) mediaSource).getLicenseUrl();
-        String[] keyRequestPropertiesArray =
-            ((DrmMedia) mediaSource).getKeyRequestPropertiesArray();
-        Map<String, String> keyRequestProperties;
-        if (keyRequestPropertiesArray == null || keyRequestPropertiesArray.length < 2) {
-          keyRequestProperties = null;
-        } else {
-          keyRequestProperties = new HashMap<>();
-          for (int i = 0; i < keyRequestPropertiesArray.length - 1; i += 2) {
-            keyRequestProperties.put(keyRequestPropertiesArray[i],
-                keyRequestPropertiesArray[i + 1]);
-          }
-        }
-
-        try {
-          drmSessionManager =
-              ExoPlayerHelper.buildDrmSessionManager(getContext(), drmSchemeUuid, drmLicenseUrl,
-                  keyRequestProperties, mainHandler);
-        } catch (UnsupportedDrmException e) {
-          int errorStringId = Util.SDK_INT < 18 ? R.string.error_drm_not_supported
-              : (e.reason == UnsupportedDrmException.REASON_UNSUPPORTED_SCHEME
-                  ? R.string.error_drm_unsupported_scheme : R.string.error_drm_unknown);
-          Toast.makeText(getContext(), errorStringId, Toast.LENGTH_SHORT).show();
-          return;
-        }
+      if (initializing && initializingSource == mediaSource) {
+        return;
       }
 
-      TrackSelection.Factory videoTrackSelectionFactory =
-          new AdaptiveVideoTrackSelection.Factory(BANDWIDTH_METER);
-      trackSelector = new DefaultTrackSelector(videoTrackSelectionFactory);
-      player = ExoPlayerFactory.newSimpleInstance(getContext(), trackSelector,  //
-          new DefaultLoadControl(), drmSessionManager, SimpleExoPlayer.EXTENSION_RENDERER_MODE_OFF);
-      player.addListener(this);
+      final UUID drmSchemeUuid = mediaSource instanceof DrmMedia ? ExoPlayerHelper.getDrmUuid(
+          ((DrmMedia) mediaSource).getType()) : null;
+      final DrmMedia drmMedia = drmSchemeUuid != null ? (DrmMedia) mediaSource : null;
+      final String drmContentId = this.drmContentId;
+      final Context context = getContext().getApplicationContext();
+      final BufferProfile profile = bufferProfile;
+      final BufferBudget budget = Toro.getBufferBudget();
+      // A newer initialization, or a release, drops the result of this one.
+      final int generation = ++initGeneration;
+      initializing = true;
+      initializingSource = mediaSource;
+      initExecutor.execute(new Runnable() {
+        @Override public void run() {
+          Components components = null;
+          Exception error = null;
+          try {
+            components = buildComponents(context, drmSchemeUuid, drmMedia, drmContentId, profile,
+                budget);
+          } catch (Exception e) {
+            // Including runtime errors, which would otherwise leave this View initializing forever.
+            error = e;
+          }
 
-      playerView.setPlayer(player);
-      player.setPlayWhenReady(shouldAutoPlay);
-      playerNeedsSource = true;
+          final Components result = components;
+          final Exception resultError = error;
+          mainHandler.post(new Runnable() {
+            @Override public void run() {
+              onComponentsBuilt(generation, result, resultError);
+            }
+          });
+        }
+      });
+      return;
     }
 
-    if (playerNeedsSource) {
-      boolean haveResumePosition = resumeWindow != C.INDEX_UNSET;
-      if (haveResumePosition) {
-        player.seekTo(resumeWindow, resumePosition);
-      }
-      player.prepare(mediaSource, !haveResumePosition, false);
-      playerNeedsSource = false;
-    }
+    prepareSource(player);
+  }
+
+  /**
+   * @return {@code true} if the player of current MediaSource is being built, {@code false}
+   * otherwise.
+   */
+  public final boolean isInitializing() {
+    return initializing;
   }
 
   public final void releasePlayer() {
     SimpleExoPlayer player = playerView.getPlayer();
+    boolean released = player != null || initializing;
     if (player != null) {
       shouldAutoPlay = player.getPlayWhenReady();
       updateResumePosition();
       player.removeListener(this);
+      player.setVideoDebugListener(null);
       player.release();
       playerView.setPlayer(null); // TODO check this
       trackSelector = null;
+      videoTrackSelectionFactory = null;
+      backgrounded = false;
+      loadControl = null;
     }
 
+    releaseRetainedSurface();
+    cancelInitialization();
+    MediaSourceCache.release(this);
     this.mediaSource = null;
+    this.media = null;
+    this.loopedSource = null;
+    if (released && playerCallback != null) {
+      playerCallback.onPlayerReleased();
+    }
+  }
+
+  /**
+   * Detach current player from this View without releasing it, so that another View can take it
+   * over using the same key (see {@link #takeOver(String)}). The player keeps playing, and keeps
+   * its buffer, meanwhile. It is released if not taken over within {@link
+   * PlayerHandoff#DEFAULT_PARK_TIMEOUT_MS}.
+   *
+   * @param key the key to hand off the player with.
+   * @return {@code true} if a player was handed off, {@code false} if there was no player.
+   */
+  public final boolean handOff(@NonNull String key) {
+    return handOff(key, PlayerHandoff.DEFAULT_PARK_TIMEOUT_MS);
+  }
+
+  /**
+   * Same as {@link #handOff(String)}, with the time the player waits to be taken over. Use {@link
+   * PlayerHandoff#NO_TIMEOUT} to keep it until the destination takes it over or releases it, see
+   * {@link PlayerHandoff#release(String)}.
+   *
+   * @param key the key to hand off the player with.
+   * @param timeoutMs time to wait before releasing the player, in milliseconds.
+   * @return {@code true} if a player was handed off, {@code false} if there was no player.
+   */
+  public final boolean handOff(@NonNull String key, long timeoutMs) {
+    SimpleExoPlayer player = playerView.getPlayer();
+    if (player == null || trackSelector == null) {
+      return false;
+    }
+
+    setBackgrounded(false);
+    player.removeListener(this);
+    player.setVideoDebugListener(null);
+    playerView.setPlayer(null);
+    releaseRetainedSurface();
+    PlayerHandoff.Entry entry =
+        new PlayerHandoff.Entry(player, trackSelector, mediaSource, media,
+            videoTrackSelectionFactory, loadControl);
+    entry.loopedSource = loopedSource;
+    MediaSourceCache.transfer(this, entry);
+    PlayerHandoff.park(key, entry, timeoutMs);
+    trackSelector = null;
+    videoTrackSelectionFactory = null;
+    loadControl = null;
+    this.mediaSource = null;
+    this.media = null;
+    this.loopedSource = null;
+    playerNeedsSource = true;
+    return true;
+  }
+
+  /**
+   * Take over the player handed off using this key, releasing current one if any. The player is
+   * attached to this View as is: no re-preparation, no seek.
+   *
+   * @param key the key the player was handed off with.
+   * @return {@code true} if a player was taken over, {@code false} if there was none to take.
+   */
+  public final boolean takeOver(@NonNull String key) {
+    return takeOver(key, null);
+  }
+
+  /**
+   * Same as {@link #takeOver(String)}, but only takes over a player of this Media. A player of
+   * another Media handed off with the same key is left for its own destination.
+   *
+   * @param key the key the player was handed off with.
+   * @param media the Media this View is going to play, or {@code null} to take any player.
+   * @return {@code true} if a player was taken over, {@code false} if there was none to take.
+   */
+  public final boolean takeOver(@NonNull String key, @Nullable Media media) {
+    PlayerHandoff.Entry entry = PlayerHandoff.take(key, media);
+    if (entry == null || !(entry.trackSelector instanceof DefaultTrackSelector)) {
+      if (entry != null) {
+        entry.player.release();
+        MediaSourceCache.release(entry);
+      }
+      return false;
+    }
+
+    releasePlayer();
+    MediaSourceCache.transfer(entry, this);
+    this.mediaSource = entry.mediaSource;
+    this.media = entry.media;
+    this.loopedSource = entry.loopedSource;
+    this.trackSelector = (DefaultTrackSelector) entry.trackSelector;
+    this.videoTrackSelectionFactory = entry.videoTrackSelectionFactory;
+    this.loadControl = entry.loadControl;
+    this.shouldAutoPlay = entry.player.getPlayWhenReady();
+    this.playerNeedsSource = false;
+    entry.player.addListener(this);
+    entry.player.setVideoDebugListener(firstFrameListener);
+    playerView.setPlayer(entry.player);
+    updatePosterVisibility();
+    wrapTextureListener();
+
+    // Apply this View's own settings to the adopted player.
+    trackSelector.setParameters(buildTrackSelectorParameters(getWidth(), getHeight()));
+    if (videoTrackSelectionFactory != null) {
+      videoTrackSelectionFactory.setMaxFrameRate(maxVideoFrameRate);
+    }
+    if (loadControl != null) {
+      loadControl.setProfile(bufferProfile);
+      loadControl.setPreviewMode(quality == QUALITY_PREVIEW);
+      loadControl.setPriority(shouldAutoPlay);
+    }
+    updateAudioRenderers();
+    maybeStopLooping();
+    return true;
   }
 
   public long getResumePosition() {
@@ -236,17 +857,128 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
     this.resumePosition = resumePosition;
   }
 
+  @Override protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    super.onSizeChanged(w, h, oldw, oldh);
+    // e.g. going full screen: re-select tracks for the new size without re-preparing.
+    if (trackSelector != null && (w != oldw || h != oldh)) {
+      trackSelector.setParameters(buildTrackSelectorParameters(w, h));
+    }
+  }
+
+  @Override protected void onWindowVisibilityChanged(int visibility) {
+    super.onWindowVisibilityChanged(visibility);
+    setBackgrounded(visibility != VISIBLE);
+  }
+
+  @Override protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    mainHandler.removeCallbacks(retentionTimeout);
+    TextureView textureView = getTextureView();
+    if (retainedSurfaceTexture != null && textureView != null) {
+      if (textureView.getSurfaceTexture() != retainedSurfaceTexture) {
+        textureView.setSurfaceTexture(retainedSurfaceTexture);
+      }
+      retainedSurfaceTexture = null;
+    }
+  }
+
   @Override protected void onDetachedFromWindow() {
     super.onDetachedFromWindow();
+    if (surfaceRetentionEnabled && retainedSurfaceTexture != null) {
+      // Likely to be re-attached soon, keep current player. It is released with the surface once
+      // recycled, or if not re-attached in time.
+      mainHandler.postDelayed(retentionTimeout, SURFACE_RETENTION_TIMEOUT_MS);
+      return;
+    }
+
     releasePlayer();
   }
 
   // private methods //
 
+  void setBackgrounded(boolean backgrounded) {
+    if (this.backgrounded == backgrounded) {
+      return;
+    }
+
+    // Only go background if audio should keep playing, otherwise there is nothing to save.
+    if (backgrounded && !(backgroundAudioEnabled && isPlaying())) {
+      return;
+    }
+
+    this.backgrounded = backgrounded;
+    SimpleExoPlayer player = getPlayer();
+    if (player == null || trackSelector == null) {
+      return;
+    }
+
+    for (int i = 0; i < player.getRendererCount(); i++) {
+      if (player.getRendererType(i) == C.TRACK_TYPE_VIDEO) {
+        trackSelector.setRendererDisabled(i, backgrounded);
+      }
+    }
+  }
+
+  // SimpleExoPlayerView adds its SurfaceView or TextureView at the bottom of content frame.
+  @Nullable private TextureView getTextureView() {
+    View contentFrame =
+        playerView.findViewById(com.google.android.exoplayer2.R.id.exo_content_frame);
+    if (contentFrame instanceof ViewGroup
+        && ((ViewGroup) contentFrame).getChildAt(0) instanceof TextureView) {
+      return (TextureView) ((ViewGroup) contentFrame).getChildAt(0);
+    }
+    return null;
+  }
+
+  // The player sets its own listener on our TextureView once set to the SimpleExoPlayerView.
+  private void wrapTextureListener() {
+    TextureView textureView = getTextureView();
+    if (textureView != null && textureView.getSurfaceTextureListener() != null
+        && !(textureView.getSurfaceTextureListener() instanceof TextureListener)) {
+      textureView.setSurfaceTextureListener(
+          new TextureListener(textureView.getSurfaceTextureListener()));
+    }
+  }
+
+  // The retained surface is only useful to the player bound to it, which is gone.
+  private void releaseRetainedSurface() {
+    mainHandler.removeCallbacks(retentionTimeout);
+    if (retainedSurfaceTexture != null) {
+      retainedSurfaceTexture.release();
+      retainedSurfaceTexture = null;
+    }
+  }
+
+  private void updateAudioRenderers() {
+    SimpleExoPlayer player = getPlayer();
+    if (player == null || trackSelector == null) {
+      return;
+    }
+
+    for (int i = 0; i < player.getRendererCount(); i++) {
+      if (player.getRendererType(i) == C.TRACK_TYPE_AUDIO) {
+        trackSelector.setRendererDisabled(i, muted);
+      }
+    }
+  }
+
+  // Don't select video tracks much larger than what this View can display.
+  private DefaultTrackSelector.Parameters buildTrackSelectorParameters(int width, int height) {
+    DefaultTrackSelector.Parameters parameters = trackSelector.getParameters();
+    parameters = width > 0 && height > 0 ? parameters.withViewportSize(width, height, false)
+        : parameters.withoutViewportSizeConstraints();
+    return parameters.withMaxVideoBitrate(
+        quality == QUALITY_PREVIEW ? PREVIEW_MAX_VIDEO_BITRATE : Integer.MAX_VALUE);
+  }
+
   private void updateResumePosition() {
     SimpleExoPlayer player = playerView.getPlayer();
     if (player != null) {
       resumeWindow = player.getCurrentWindowIndex();
+      if (loopedSource != null) {
+        // Window index keeps counting up with every loop, the MediaSource itself has fewer.
+        resumeWindow = loopedSource.toSourceWindowIndex(resumeWindow);
+      }
       resumePosition = player.isCurrentWindowSeekable() ? //
           Math.max(0, player.getCurrentPosition()) : C.TIME_UNSET;
     }
@@ -257,18 +989,114 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
     resumePosition = C.TIME_UNSET;
   }
 
-  private UUID getDrmUuid(String typeString) throws ParserException {
-    switch (typeString.toLowerCase()) {
-      case "widevine":
-        return C.WIDEVINE_UUID;
-      case "playready":
-        return C.PLAYREADY_UUID;
-      default:
-        try {
-          return UUID.fromString(typeString);
-        } catch (RuntimeException e) {
-          throw new ParserException("Unsupported drm type: " + typeString);
+  private void cancelInitialization() {
+    if (initializing) {
+      initializing = false;
+      initializingSource = null;
+      initGeneration++;
+    }
+  }
+
+  // Worker thread
+  private static Components buildComponents(Context context, @Nullable UUID drmSchemeUuid,
+      @Nullable DrmMedia drmMedia, @Nullable String drmContentId, BufferProfile profile,
+      BufferBudget budget) throws UnsupportedDrmException {
+    DrmSessionManager<FrameworkMediaCrypto> drmSessionManager = null;
+    if (drmSchemeUuid != null && drmMedia != null) {
+      String[] keyRequestPropertiesArray = drmMedia.getKeyRequestPropertiesArray();
+      Map<String, String> keyRequestProperties;
+      if (keyRequestPropertiesArray == null || keyRequestPropertiesArray.length < 2) {
+        keyRequestProperties = null;
+      } else {
+        keyRequestProperties = new HashMap<>();
+        for (int i = 0; i < keyRequestPropertiesArray.length - 1; i += 2) {
+          keyRequestProperties.put(keyRequestPropertiesArray[i], keyRequestPropertiesArray[i + 1]);
         }
+      }
+
+      // DRM events are delivered on main thread.
+      drmSessionManager = ExoPlayerHelper.buildDrmSessionManager(context, drmSchemeUuid,
+          drmMedia.getLicenseUrl(), keyRequestProperties, drmContentId,
+          new Handler(Looper.getMainLooper()));
+    }
+
+    FrameRateCappedTrackSelectionFactory videoTrackSelectionFactory =
+        new FrameRateCappedTrackSelectionFactory(
+            new AdaptiveVideoTrackSelection.Factory(ToroBandwidthMeter.with(context)));
+    return new Components(drmSessionManager, videoTrackSelectionFactory,
+        new DefaultTrackSelector(videoTrackSelectionFactory),
+        new ToroLoadControl(profile, budget));
+  }
+
+  // Main thread. Settings changed during the initialization are applied here.
+  private void onComponentsBuilt(int generation, @Nullable Components components,
+      @Nullable Exception error) {
+    // A newer initialization is running, or there is none anymore: nothing to clear here.
+    if (!initializing || generation != initGeneration) {
+      return;
+    }
+
+    initializing = false;
+    initializingSource = null;
+    if (components == null) {
+      if (error instanceof UnsupportedDrmException) {
+        int errorStringId = Util.SDK_INT < 18 ? R.string.error_drm_not_supported
+            : (((UnsupportedDrmException) error).reason
+                == UnsupportedDrmException.REASON_UNSUPPORTED_SCHEME
+                ? R.string.error_drm_unsupported_scheme : R.string.error_drm_unknown);
+        Toast.makeText(getContext(), errorStringId, Toast.LENGTH_SHORT).show();
+      }
+      if (playerCallback != null && error != null) {
+        playerCallback.onPlayerError(error);
+      }
+      return;
+    }
+
+    videoTrackSelectionFactory = components.videoTrackSelectionFactory;
+    videoTrackSelectionFactory.setMaxFrameRate(maxVideoFrameRate);
+    trackSelector = components.trackSelector;
+    trackSelector.setParameters(buildTrackSelectorParameters(getWidth(), getHeight()));
+    loadControl = components.loadControl;
+    loadControl.setProfile(bufferProfile);
+    loadControl.setPreviewMode(quality == QUALITY_PREVIEW);
+    loadControl.setPriority(shouldAutoPlay);
+    SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(getContext(), trackSelector,  //
+        loadControl, components.drmSessionManager, SimpleExoPlayer.EXTENSION_RENDERER_MODE_OFF);
+    player.addListener(this);
+    player.setVideoDebugListener(firstFrameListener);
+
+    playerView.setPlayer(player);
+    updatePosterVisibility();
+    wrapTextureListener();
+    updateAudioRenderers();
+    player.setPlayWhenReady(shouldAutoPlay);
+    playerNeedsSource = true;
+    prepareSource(player);
+    if (playerCallback != null) {
+      playerCallback.onPlayerInitialized();
+    }
+  }
+
+  private void prepareSource(SimpleExoPlayer player) {
+    if (playerNeedsSource) {
+      boolean haveResumePosition = resumeWindow != C.INDEX_UNSET;
+      if (haveResumePosition) {
+        player.seekTo(resumeWindow, resumePosition);
+      }
+      loopedSource = loopingEnabled ? new LoopedMediaSource(mediaSource) : null;
+      player.prepare(loopedSource != null ? new LoopingMediaSource(loopedSource) : mediaSource,
+          !haveResumePosition, false);
+      playerNeedsSource = false;
+    }
+  }
+
+  // A LoopingMediaSource loops forever, stop it by preparing the MediaSource itself again.
+  private void maybeStopLooping() {
+    SimpleExoPlayer player = playerView.getPlayer();
+    if (!loopingEnabled && loopedSource != null && player != null) {
+      updateResumePosition();
+      playerNeedsSource = true;
+      prepareSource(player);
     }
   }
 
@@ -289,7 +1117,7 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
   // Implement listeners
 
   @Override public void onTimelineChanged(Timeline timeline, Object manifest) {
-    // TODO ??
+    // Do nothing
   }
 
   @Override
@@ -313,6 +1141,17 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
   }
 
   @Override public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+    if (loadControl != null) {
+      // The playing player is the elected one, its buffer comes first.
+      loadControl.setPriority(playWhenReady);
+    }
+
+    if (playbackState == ExoPlayer.STATE_ENDED && loopingEnabled && getPlayer() != null) {
+      // Looping was enabled after preparation, replay in place instead of completing.
+      getPlayer().seekTo(0);
+      return;
+    }
+
     if (this.playerCallback != null) {
       this.playerCallback.onPlayerStateChanged(playWhenReady, playbackState);
     }
@@ -377,12 +1216,16 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
   public void start() {
     if (getPlayer() != null) {
       getPlayer().setPlayWhenReady(true);
+    } else if (initializing) {
+      shouldAutoPlay = true;
     }
   }
 
   public void pause() {
     if (getPlayer() != null) {
       getPlayer().setPlayWhenReady(false);
+    } else if (initializing) {
+      shouldAutoPlay = false;
     }
   }
 
@@ -416,6 +1259,8 @@ public class ExoPlayerView extends FrameLayout implements ExoPlayer.EventListene
   }
 
   public void setVolume(float volume) {
+    setMuted(volume <= 0.f);
+
     if (getPlayer() != null) {
       getPlayer().setVolume(volume);
     }
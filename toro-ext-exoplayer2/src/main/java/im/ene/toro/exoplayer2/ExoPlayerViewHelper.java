@@ -19,6 +19,11 @@ package im.ene.toro.exoplayer2;
 import android.support.annotation.NonNull;
 import android.view.View;
 import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.drm.DrmSession;
+import com.google.android.exoplayer2.drm.UnsupportedDrmException;
+import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
+import im.ene.toro.PlaybackErrorPolicy;
 import im.ene.toro.PlayerViewHelper;
 import im.ene.toro.ToroPlayer;
 
@@ -37,6 +42,10 @@ public class ExoPlayerViewHelper extends PlayerViewHelper implements PlayerCallb
     super(player, itemView);
   }
 
+  @Override public void onPlayerInitialized() {
+    // Do nothing, the player is reported prepared once it starts buffering.
+  }
+
   @Override public void onPlayerStateChanged(boolean playWhenReady, @State int state) {
     switch (state) {
       case ExoPlayer.STATE_IDLE:
@@ -70,4 +79,24 @@ public class ExoPlayerViewHelper extends PlayerViewHelper implements PlayerCallb
   @Override public final boolean onPlayerError(Exception error) {
     return super.onPlaybackError(error);
   }
+
+  @Override protected int getErrorType(Exception error) {
+    Throwable cause = error;
+    while (cause != null) {
+      // ParserException is an IOException, but retrying a malformed stream doesn't help.
+      if (cause instanceof ParserException
+          || cause instanceof MediaCodecRenderer.DecoderInitializationException) {
+        return PlaybackErrorPolicy.ERROR_TYPE_DECODER;
+      }
+
+      if (cause instanceof UnsupportedDrmException
+          || cause instanceof DrmSession.DrmSessionException) {
+        return PlaybackErrorPolicy.ERROR_TYPE_DRM;
+      }
+
+      cause = cause.getCause();
+    }
+
+    return super.getErrorType(error);
+  }
 }
@@ -16,27 +16,36 @@
 
 package im.ene.toro.exoplayer2;
 
+import android.net.Uri;
 import android.support.annotation.CallSuper;
 import android.support.annotation.FloatRange;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.source.MediaSource;
+import im.ene.toro.AutoplayPolicy;
+import im.ene.toro.BackgroundAudioPlayer;
 import im.ene.toro.Toro;
 import im.ene.toro.ToroAdapter;
-import im.ene.toro.ToroPlayer;
 import im.ene.toro.ToroUtil;
 
 /**
  * Created by eneim on 6/11/16.
  */
-public abstract class ExoPlayerViewHolder extends ToroAdapter.ViewHolder implements ToroPlayer {
+public abstract class ExoPlayerViewHolder extends ToroAdapter.ViewHolder
+    implements BackgroundAudioPlayer {
 
   @NonNull protected final ExoPlayerView playerView;
   protected final ExoPlayerViewHelper helper;
   private boolean playable = false; // normally false
+  private boolean takenOver = false;
+  // Preview quality was picked by the AutoplayPolicy, not by the client.
+  private boolean previewByPolicy = false;
+  // Audio was muted by the AutoplayPolicy, not by the client.
+  private boolean mutedByPolicy = false;
 
   public ExoPlayerViewHolder(View itemView) {
     super(itemView);
@@ -51,15 +60,53 @@ public abstract class ExoPlayerViewHolder extends ToroAdapter.ViewHolder impleme
 
   protected abstract MediaSource getMediaSource();
 
+  /**
+   * Override this to let the player reuse the MediaSource of current Media from the {@link
+   * MediaSourceCache}, instead of building one in {@link #getMediaSource()} each time it is bound.
+   *
+   * @return current Media, or {@code null} to use {@link #getMediaSource()}.
+   */
+  @Nullable protected Media getMedia() {
+    return null;
+  }
+
   protected abstract void onBind(RecyclerView.Adapter adapter, @Nullable Object object);
 
+  /**
+   * Override this to show a poster frame of current Media, instead of a black tile, until the
+   * player renders its first frame. See {@link PosterFrameCache}.
+   *
+   * @return uri of current Media, or {@code null} to not show any poster frame.
+   */
+  @Nullable protected Uri getPosterFrameUri() {
+    return null;
+  }
+
   @Override public final void bind(RecyclerView.Adapter adapter, @Nullable Object object) {
     playerView.setPlayerCallback(helper);
     onBind(adapter, object);
+    if (playerView.isSurfaceRetained() && !playerView.keepRetainedPlayer(getMedia())) {
+      playable = false;
+    }
+    Uri posterFrameUri = getPosterFrameUri();
+    String mediaId = getMediaId();
+    playerView.setDrmContentId(mediaId);
+    if (posterFrameUri != null && mediaId != null) {
+      playerView.loadPosterFrame(mediaId, posterFrameUri);
+    } else {
+      playerView.setPosterFrame(null);
+    }
     helper.onBound();
   }
 
   @CallSuper @Override protected void onRecycled() {
+    if (playerView.isSurfaceRetained()) {
+      // Keep the player and its surface: rebinding the same Media continues with them, see bind().
+      // The View releases them once the retention times out, and calls back to give the decoder.
+      helper.onRecycled(false);
+      return;
+    }
+
     playerView.setPlayerCallback(null);
     helper.onRecycled();
   }
@@ -80,17 +127,145 @@ public abstract class ExoPlayerViewHolder extends ToroAdapter.ViewHolder impleme
 
   }
 
+  /**
+   * See {@link ExoPlayerView#setBackgroundAudioEnabled(boolean)}.
+   */
+  @Override public boolean isBackgroundAudioEnabled() {
+    return playerView.isBackgroundAudioEnabled();
+  }
+
+  /**
+   * Hand off the playing engine of this player to another View, e.g. a detail screen or a dialog,
+   * without releasing it. The other side calls {@link #takeOver(String)} with the same key.
+   * Engines not taken over in time are released, see {@link PlayerHandoff}.
+   *
+   * @param key the key to hand off the engine with.
+   * @return {@code true} if an engine was handed off, {@code false} if there was none.
+   */
+  public final boolean handOff(@NonNull String key) {
+    return handOff(key, PlayerHandoff.DEFAULT_PARK_TIMEOUT_MS);
+  }
+
+  /**
+   * Same as {@link #handOff(String)}, with the time the engine waits to be taken over, or {@link
+   * PlayerHandoff#NO_TIMEOUT} to keep it until it is taken over or released.
+   *
+   * @param key the key to hand off the engine with.
+   * @param timeoutMs time to wait before releasing the engine, in milliseconds.
+   * @return {@code true} if an engine was handed off, {@code false} if there was none.
+   */
+  public final boolean handOff(@NonNull String key, long timeoutMs) {
+    if (playerView.getPlayer() == null) {
+      return false;
+    }
+
+    helper.onHandOff();
+    playable = false;
+    return playerView.handOff(key, timeoutMs);
+  }
+
+  /**
+   * Take over the engine handed off using this key, if any. Call this from {@link
+   * #onBind(RecyclerView.Adapter, Object)}, before setting the Media. Once this player is elected,
+   * the engine continues from where it is instead of being prepared again. An engine playing
+   * another Media than {@link #getMedia()} is not taken over.
+   *
+   * @param key the key the engine was handed off with.
+   * @return {@code true} if an engine was taken over, {@code false} otherwise.
+   */
+  public final boolean takeOver(@NonNull String key) {
+    takenOver = playerView.takeOver(key, getMedia());
+    return takenOver;
+  }
+
+  // The engine taken over is already prepared, let Toro continue with it.
+  private boolean onPrepareTakenOver() {
+    if (!takenOver || playerView.getPlayer() == null) {
+      takenOver = false;
+      return false;
+    }
+
+    takenOver = false;
+    onVideoPrepared();
+    helper.onTakenOver();
+    return true;
+  }
+
   @Override public void preparePlayer(boolean playWhenReady) {
+    preparePlayer(playWhenReady, C.TIME_UNSET);
+  }
+
+  @Override public void preparePlayer(boolean playWhenReady, long position) {
+    if (onPrepareTakenOver()) {
+      return;
+    }
+
+    if (onInitializing(playWhenReady)) {
+      return;
+    }
+
+    applyAutoplayMode(playWhenReady);
     try {
-      playerView.setMediaSource(getMediaSource(), playWhenReady);
+      Media media = getMedia();
+      if (position == C.TIME_UNSET) {
+        // Keep the resume position the View may hold already.
+        if (media != null) {
+          playerView.setMedia(media, playWhenReady);
+        } else {
+          playerView.setMediaSource(getMediaSource(), playWhenReady);
+        }
+      } else if (media != null) {
+        playerView.setMedia(media, playWhenReady, position);
+      } else {
+        playerView.setMediaSource(getMediaSource(), playWhenReady, position);
+      }
     } catch (ParserException e) {
       e.printStackTrace();
     }
   }
 
+  // The player of current Media is being built already, don't build another one.
+  private boolean onInitializing(boolean playWhenReady) {
+    if (!playerView.isInitializing()) {
+      return false;
+    }
+
+    if (playWhenReady) {
+      playerView.start();
+    }
+    return true;
+  }
+
+  // Players prepared by the election (not started right away) autoplay at the quality the network
+  // affords. A quality set by the client is kept.
+  private void applyAutoplayMode(boolean playWhenReady) {
+    if (playWhenReady) {
+      return;
+    }
+
+    boolean preview = Toro.getAutoplayPolicy().getMode() == AutoplayPolicy.MODE_PREVIEW;
+    if (preview && playerView.getQuality() == ExoPlayerView.QUALITY_FULL) {
+      playerView.setQuality(ExoPlayerView.QUALITY_PREVIEW);
+      previewByPolicy = true;
+    } else if (!preview && previewByPolicy) {
+      playerView.setQuality(ExoPlayerView.QUALITY_FULL);
+      previewByPolicy = false;
+    }
+
+    // Previews autoplay without decoding audio, until the user turns the volume up.
+    if (preview && !playerView.isMuted()) {
+      playerView.setMuted(true);
+      mutedByPolicy = true;
+    } else if (!preview && mutedByPolicy) {
+      playerView.setMuted(false);
+      mutedByPolicy = false;
+    }
+  }
+
   @Override public void releasePlayer() {
     playerView.releasePlayer();
     playable = false;
+    takenOver = false;
   }
 
   // Client could override this method for better practice
@@ -146,6 +321,12 @@ public abstract class ExoPlayerViewHolder extends ToroAdapter.ViewHolder impleme
 
   @Override public void setVolume(@FloatRange(from = 0.f, to = 1.f) float volume) {
     this.playerView.setVolume(volume);
+    if (volume > 0.f) {
+      // Unmuting is an engagement, leave preview quality if any.
+      this.playerView.setQuality(ExoPlayerView.QUALITY_FULL);
+      previewByPolicy = false;
+      mutedByPolicy = false;
+    }
   }
 
   @Override public int getPlayOrder() {
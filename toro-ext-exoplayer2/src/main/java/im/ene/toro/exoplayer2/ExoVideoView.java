@@ -26,8 +26,9 @@ import android.graphics.Color;
 import android.net.Uri;
 import android.os.Handler;
 import android.support.annotation.FloatRange;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
-import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.SurfaceView;
 import android.view.TextureView;
@@ -35,28 +36,18 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import com.google.android.exoplayer2.C;
-import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
 import com.google.android.exoplayer2.drm.FrameworkMediaCrypto;
-import com.google.android.exoplayer2.drm.FrameworkMediaDrm;
-import com.google.android.exoplayer2.drm.HttpMediaDrmCallback;
-import com.google.android.exoplayer2.drm.DefaultDrmSessionManager;
 import com.google.android.exoplayer2.drm.UnsupportedDrmException;
-import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
-import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
-import com.google.android.exoplayer2.source.dash.DashMediaSource;
-import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
-import com.google.android.exoplayer2.source.hls.HlsMediaSource;
-import com.google.android.exoplayer2.source.smoothstreaming.DefaultSsChunkSource;
-import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
 import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.text.TextRenderer;
 import com.google.android.exoplayer2.trackselection.AdaptiveVideoTrackSelection;
@@ -65,11 +56,12 @@ import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.util.Util;
+import im.ene.toro.BufferProfile;
+import im.ene.toro.Toro;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
@@ -133,6 +125,10 @@ public class ExoVideoView extends FrameLayout {
     }
 
     @Override public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+      if (loadControl != null) {
+        loadControl.setPriority(playWhenReady);
+      }
+
       if (playerCallback != null) {
         playerCallback.onPlayerStateChanged(playWhenReady, playbackState);
       }
@@ -313,6 +309,15 @@ public class ExoVideoView extends FrameLayout {
     }
 
     this.media = media;
+    if (media instanceof DrmMedia) {
+      try {
+        // Provision the device while the player is built, if not done yet.
+        DrmSessionCache.with(getContext())
+            .prewarm(ExoPlayerHelper.getDrmUuid(((DrmMedia) media).getType()));
+      } catch (ParserException e) {
+        // Reported once the player is prepared.
+      }
+    }
 
     releasePlayer();
     this.isTimelineStatic = false;
@@ -361,8 +366,8 @@ public class ExoVideoView extends FrameLayout {
       // Setup DRM Resources
       DrmSessionManager<FrameworkMediaCrypto> drmSessionManager = null;
       try {
-        UUID drmSchemeUuid =
-            this.media instanceof DrmMedia ? getDrmUuid(((DrmMedia) this.media).getType()) : null;
+        UUID drmSchemeUuid = this.media instanceof DrmMedia ? ExoPlayerHelper.getDrmUuid(
+            ((DrmMedia) this.media).getType()) : null;
         if (drmSchemeUuid != null) {
           String drmLicenseUrl = ((DrmMedia) this.media).getLicenseUrl();
           String[] keyRequestPropertiesArray =
@@ -397,10 +402,12 @@ public class ExoVideoView extends FrameLayout {
       }
 
       TrackSelection.Factory videoTrackSelectionFactory =
-          new AdaptiveVideoTrackSelection.Factory(BANDWIDTH_METER);
+          new AdaptiveVideoTrackSelection.Factory(ToroBandwidthMeter.with(getContext()));
       trackSelector = new DefaultTrackSelector(/* mainHandler, */ videoTrackSelectionFactory);
+      loadControl = new ToroLoadControl(BufferProfile.FULL_SCREEN, Toro.getBufferBudget());
+      loadControl.setPriority(shouldAutoPlay);
       player = ExoPlayerFactory.newSimpleInstance(getContext(), trackSelector,  //
-          new DefaultLoadControl(), drmSessionManager /*, false */);
+          loadControl, drmSessionManager /*, false */);
       setPlayer(player);
       if (isTimelineStatic) {
         // playerWindow is not null here
@@ -428,6 +435,24 @@ public class ExoVideoView extends FrameLayout {
     player.setPlayWhenReady(this.shouldAutoPlay);
   }
 
+  /**
+   * Prepare the player to start from {@code position}. This only takes effect when a new player
+   * is created, an existing one keeps its position.
+   *
+   * @param shouldAutoPlay Immediately start playback when Ready.
+   * @param position position to start from, in millisecond.
+   */
+  public final void preparePlayer(boolean shouldAutoPlay, long position) {
+    // C.TIME_UNSET keeps the default position, e.g. the live edge of a live stream.
+    if (player == null && position != C.TIME_UNSET) {
+      this.playerWindow = 0;
+      this.playerPosition = Math.max(0, position);
+      this.isTimelineStatic = true;
+    }
+
+    preparePlayer(shouldAutoPlay);
+  }
+
   public final void releasePlayer() {
     if (player != null) {
       shouldAutoPlay = player.getPlayWhenReady();
@@ -445,13 +470,95 @@ public class ExoVideoView extends FrameLayout {
       player.release();
       player = null;
       trackSelector = null;
+      loadControl = null;
+      if (playerCallback != null) {
+        playerCallback.onPlayerReleased();
+      }
     }
 
     shutterView.setVisibility(VISIBLE);
   }
 
+  /**
+   * Detach current player from this View without releasing it, so that another View can take it
+   * over using the same key. See {@link ExoPlayerView#handOff(String)}.
+   *
+   * @param key the key to hand off the player with.
+   * @return {@code true} if a player was handed off, {@code false} if there was no player.
+   */
+  public final boolean handOff(@NonNull String key) {
+    return handOff(key, PlayerHandoff.DEFAULT_PARK_TIMEOUT_MS);
+  }
+
+  /**
+   * Same as {@link #handOff(String)}, with the time the player waits to be taken over. See {@link
+   * ExoPlayerView#handOff(String, long)}.
+   *
+   * @param key the key to hand off the player with.
+   * @param timeoutMs time to wait before releasing the player, in milliseconds.
+   * @return {@code true} if a player was handed off, {@code false} if there was no player.
+   */
+  public final boolean handOff(@NonNull String key, long timeoutMs) {
+    if (player == null || trackSelector == null) {
+      return false;
+    }
+
+    SimpleExoPlayer handedOff = player;
+    setPlayer(null);
+    PlayerHandoff.park(key,
+        new PlayerHandoff.Entry(handedOff, trackSelector, null, media, null, loadControl),
+        timeoutMs);
+    trackSelector = null;
+    loadControl = null;
+    playerNeedsSource = true;
+    return true;
+  }
+
+  /**
+   * Take over the player handed off using this key, releasing current one if any. See {@link
+   * ExoPlayerView#takeOver(String)}.
+   *
+   * @param key the key the player was handed off with.
+   * @return {@code true} if a player was taken over, {@code false} if there was none to take.
+   */
+  public final boolean takeOver(@NonNull String key) {
+    return takeOver(key, null);
+  }
+
+  /**
+   * Same as {@link #takeOver(String)}, but only takes over a player of this Media. See {@link
+   * ExoPlayerView#takeOver(String, Media)}.
+   *
+   * @param key the key the player was handed off with.
+   * @param media the Media this View is going to play, or {@code null} to take any player.
+   * @return {@code true} if a player was taken over, {@code false} if there was none to take.
+   */
+  public final boolean takeOver(@NonNull String key, @Nullable Media media) {
+    PlayerHandoff.Entry entry = PlayerHandoff.take(key, media);
+    if (entry == null) {
+      return false;
+    }
+
+    releasePlayer();
+    if (entry.media != null) {
+      this.media = entry.media;
+    }
+    this.trackSelector = entry.trackSelector;
+    this.loadControl = entry.loadControl;
+    this.shouldAutoPlay = entry.player.getPlayWhenReady();
+    this.playerNeedsSource = false;
+    setPlayer(entry.player);
+    // Video size is known already, so it will not be reported again.
+    Format format = entry.player.getVideoFormat();
+    if (format != null && format.width > 0 && format.height > 0) {
+      float pixelWidthHeightRatio =
+          format.pixelWidthHeightRatio > 0 ? format.pixelWidthHeightRatio : 1.f;
+      setAspectRatio(format.width * pixelWidthHeightRatio / format.height);
+    }
+    return true;
+  }
+
   private DataSource.Factory mediaDataSourceFactory;
-  private static final DefaultBandwidthMeter BANDWIDTH_METER = new DefaultBandwidthMeter();
   private static final CookieManager DEFAULT_COOKIE_MANAGER;
 
   static {
@@ -462,6 +569,7 @@ public class ExoVideoView extends FrameLayout {
   Timeline.Window window;
   private Handler mainHandler;
   private MappingTrackSelector trackSelector;
+  private ToroLoadControl loadControl;
   private boolean playerNeedsSource = true;
   boolean isTimelineStatic;
   private boolean shouldAutoPlay;
@@ -471,86 +579,37 @@ public class ExoVideoView extends FrameLayout {
   private Media media;
 
   private MediaSource buildMediaSource(Uri uri, String overrideExtension) {
-    int type = Util.inferContentType(
-        !TextUtils.isEmpty(overrideExtension) ? "." + overrideExtension : uri.getLastPathSegment());
-    switch (type) {
-      case C.TYPE_SS:
-        return new SsMediaSource(uri, buildDataSourceFactory(false),
-            new DefaultSsChunkSource.Factory(mediaDataSourceFactory), mainHandler, null /* eventLogger */);
-      case C.TYPE_DASH:
-        return new DashMediaSource(uri, buildDataSourceFactory(false),
-            new DefaultDashChunkSource.Factory(mediaDataSourceFactory), mainHandler, null /* eventLogger */);
-      case C.TYPE_HLS:
-        return new HlsMediaSource(uri, mediaDataSourceFactory, mainHandler, null /* eventLogger */);
-      case C.TYPE_OTHER:
-        return new ExtractorMediaSource(uri, mediaDataSourceFactory, new DefaultExtractorsFactory(),
-            mainHandler, null /* eventLogger */);
-      default: {
-        throw new IllegalStateException("Unsupported type: " + type);
-      }
-    }
+    return ExoPlayerHelper.buildMediaSource(getContext(), uri, mediaDataSourceFactory, mainHandler,
+        overrideExtension);
   }
 
   private DrmSessionManager<FrameworkMediaCrypto> buildDrmSessionManager(UUID uuid,
       String licenseUrl, Map<String, String> keyRequestProperties) throws UnsupportedDrmException {
-    if (Util.SDK_INT < 18) {
-      return null;
-    }
-
-    HttpMediaDrmCallback drmCallback =
-        new HttpMediaDrmCallback(licenseUrl, buildHttpDataSourceFactory(false),
-            keyRequestProperties);
-    return new DefaultDrmSessionManager<>(uuid, FrameworkMediaDrm.newInstance(uuid), drmCallback,
-        null, mainHandler, null /* eventLogger */);
+    return ExoPlayerHelper.buildDrmSessionManager(getContext(), uuid, licenseUrl,
+        keyRequestProperties, media.getMediaUri().toString(), mainHandler);
   }
 
   /**
    * Returns a new DataSource factory.
    *
-   * @param useBandwidthMeter Whether to set {@link #BANDWIDTH_METER} as a listener to the new
+   * @param useBandwidthMeter Whether to set the {@link ToroBandwidthMeter} as a listener to the new
    * DataSource factory.
    * @return A new DataSource factory.
    */
   private DataSource.Factory buildDataSourceFactory(boolean useBandwidthMeter) {
-    return buildDataSourceFactory(useBandwidthMeter ? BANDWIDTH_METER : null);
-  }
-
-  /**
-   * Returns a new HttpDataSource factory.
-   *
-   * @param useBandwidthMeter Whether to set {@link #BANDWIDTH_METER} as a listener to the new
-   * DataSource factory.
-   * @return A new HttpDataSource factory.
-   */
-  private HttpDataSource.Factory buildHttpDataSourceFactory(boolean useBandwidthMeter) {
-    return buildHttpDataSourceFactory(useBandwidthMeter ? BANDWIDTH_METER : null);
+    return buildDataSourceFactory(useBandwidthMeter ? ToroBandwidthMeter.with(getContext()) : null);
   }
 
-  private DataSource.Factory buildDataSourceFactory(DefaultBandwidthMeter bandwidthMeter) {
+  private DataSource.Factory buildDataSourceFactory(ToroBandwidthMeter bandwidthMeter) {
     return new DefaultDataSourceFactory(getContext(), bandwidthMeter,
         buildHttpDataSourceFactory(bandwidthMeter));
   }
 
-  private HttpDataSource.Factory buildHttpDataSourceFactory(DefaultBandwidthMeter bandwidthMeter) {
+  private HttpDataSource.Factory buildHttpDataSourceFactory(ToroBandwidthMeter bandwidthMeter) {
     return new DefaultHttpDataSourceFactory(Util.getUserAgent(getContext(), "Toro"),
         bandwidthMeter);
   }
 
-  private UUID getDrmUuid(String typeString) throws ParserException {
-    switch (typeString.toLowerCase()) {
-      case "widevine":
-        return C.WIDEVINE_UUID;
-      case "playready":
-        return C.PLAYREADY_UUID;
-      default:
-        try {
-          return UUID.fromString(typeString);
-        } catch (RuntimeException e) {
-          throw new ParserException("Unsupported drm type: " + typeString);
-        }
-    }
-  }
-
   @TargetApi(23) private boolean requiresPermission(Uri uri) {
     return Util.SDK_INT >= 23
         && Util.isLocalFileUri(uri)
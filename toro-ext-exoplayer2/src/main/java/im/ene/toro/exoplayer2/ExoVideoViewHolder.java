@@ -38,6 +38,7 @@ public abstract class ExoVideoViewHolder extends ToroAdapter.ViewHolder implemen
   @NonNull protected final ExoVideoView playerView;
   protected final ExoPlayerViewHelper helper;
   private boolean playable = false; // normally false
+  private boolean takenOver = false;
 
   public ExoVideoViewHolder(View itemView) {
     super(itemView);
@@ -79,13 +80,93 @@ public abstract class ExoVideoViewHolder extends ToroAdapter.ViewHolder implemen
 
   }
 
+  /**
+   * Hand off the playing engine of this player to another View, e.g. a detail screen or a dialog,
+   * without releasing it. The other side calls {@link #takeOver(String)} with the same key.
+   * Engines not taken over in time are released, see {@link PlayerHandoff}.
+   *
+   * @param key the key to hand off the engine with.
+   * @return {@code true} if an engine was handed off, {@code false} if there was none.
+   */
+  public final boolean handOff(@NonNull String key) {
+    return handOff(key, PlayerHandoff.DEFAULT_PARK_TIMEOUT_MS);
+  }
+
+  /**
+   * Same as {@link #handOff(String)}, with the time the engine waits to be taken over, or {@link
+   * PlayerHandoff#NO_TIMEOUT} to keep it until it is taken over or released.
+   *
+   * @param key the key to hand off the engine with.
+   * @param timeoutMs time to wait before releasing the engine, in milliseconds.
+   * @return {@code true} if an engine was handed off, {@code false} if there was none.
+   */
+  public final boolean handOff(@NonNull String key, long timeoutMs) {
+    if (playerView.getPlayer() == null) {
+      return false;
+    }
+
+    helper.onHandOff();
+    playable = false;
+    return playerView.handOff(key, timeoutMs);
+  }
+
+  /**
+   * Take over the engine handed off using this key, if any. Call this from {@link
+   * #onBind(RecyclerView.Adapter, Object)}, before setting the Media. Once this player is elected,
+   * the engine continues from where it is instead of being prepared again.
+   *
+   * @param key the key the engine was handed off with.
+   * @return {@code true} if an engine was taken over, {@code false} otherwise.
+   */
+  public final boolean takeOver(@NonNull String key) {
+    return takeOver(key, null);
+  }
+
+  /**
+   * Same as {@link #takeOver(String)}, but an engine playing another Media is not taken over.
+   *
+   * @param key the key the engine was handed off with.
+   * @param media the Media this player is going to play, or {@code null} to take any engine.
+   * @return {@code true} if an engine was taken over, {@code false} otherwise.
+   */
+  public final boolean takeOver(@NonNull String key, @Nullable Media media) {
+    takenOver = playerView.takeOver(key, media);
+    return takenOver;
+  }
+
+  // The engine taken over is already prepared, let Toro continue with it.
+  private boolean onPrepareTakenOver() {
+    if (!takenOver || playerView.getPlayer() == null) {
+      takenOver = false;
+      return false;
+    }
+
+    takenOver = false;
+    onVideoPrepared();
+    helper.onTakenOver();
+    return true;
+  }
+
   @Override public void preparePlayer(boolean playWhenReady) {
+    if (onPrepareTakenOver()) {
+      return;
+    }
+
     playerView.preparePlayer(playWhenReady);
   }
 
+  @Override public void preparePlayer(boolean playWhenReady, long position) {
+    if (onPrepareTakenOver()) {
+      return;
+    }
+
+    playerView.preparePlayer(playWhenReady, position);
+  }
+
   @Override public void releasePlayer() {
     playerView.releasePlayer();
     playable = false;
+    takenOver = false;
   }
 
   // Client could override this method for better practice
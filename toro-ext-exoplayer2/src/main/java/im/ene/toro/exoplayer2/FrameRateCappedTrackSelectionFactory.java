@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import java.util.Arrays;
+
+/**
+ * Drop the tracks whose frame rate is higher than a cap before delegating the selection. Tracks
+ * with unknown frame rate are kept. If no track is under the cap, the one with lowest frame rate
+ * is used.
+ */
+final class FrameRateCappedTrackSelectionFactory implements TrackSelection.Factory {
+
+  private final TrackSelection.Factory delegate;
+  private float maxFrameRate = Format.NO_VALUE;
+
+  FrameRateCappedTrackSelectionFactory(TrackSelection.Factory delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * @param maxFrameRate the frame rate cap, or {@link Format#NO_VALUE} for no cap. Applied from
+   * the next track selection.
+   */
+  void setMaxFrameRate(float maxFrameRate) {
+    this.maxFrameRate = maxFrameRate;
+  }
+
+  float getMaxFrameRate() {
+    return maxFrameRate;
+  }
+
+  @Override public TrackSelection createTrackSelection(TrackGroup group, int... tracks) {
+    if (maxFrameRate == Format.NO_VALUE) {
+      return delegate.createTrackSelection(group, tracks);
+    }
+
+    int[] allowed = new int[tracks.length];
+    int count = 0;
+    int lowestTrack = tracks[0];
+    for (int track : tracks) {
+      float frameRate = group.getFormat(track).frameRate;
+      if (frameRate == Format.NO_VALUE || frameRate <= maxFrameRate) {
+        allowed[count++] = track;
+      }
+      if (frameRate < group.getFormat(lowestTrack).frameRate) {
+        lowestTrack = track;
+      }
+    }
+
+    if (count == 0) {
+      return new FixedTrackSelection(group, lowestTrack);
+    } else if (count == 1) {
+      return new FixedTrackSelection(group, allowed[0]);
+    }
+
+    return delegate.createTrackSelection(group, Arrays.copyOf(allowed, count));
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.support.annotation.NonNull;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.LoopingMediaSource;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.upstream.Allocator;
+import java.io.IOException;
+
+/**
+ * The MediaSource looped by a {@link LoopingMediaSource}. Windows of the looping Timeline keep
+ * counting up with every loop, this remembers how many windows one loop has so that a window of
+ * the looping Timeline can be mapped back to the same window of the MediaSource itself.
+ */
+final class LoopedMediaSource implements MediaSource {
+
+  private final MediaSource mediaSource;
+
+  // Set on playback thread, 0 until the Timeline of the MediaSource is known.
+  private volatile int windowCount;
+
+  LoopedMediaSource(@NonNull MediaSource mediaSource) {
+    this.mediaSource = mediaSource;
+  }
+
+  /**
+   * @param windowIndex index of a window in the looping Timeline.
+   * @return index of the same window in the Timeline of the looped MediaSource.
+   */
+  int toSourceWindowIndex(int windowIndex) {
+    int count = windowCount;
+    return count > 0 ? windowIndex % count : 0;
+  }
+
+  @Override
+  public void prepareSource(ExoPlayer player, boolean isTopLevelSource, final Listener listener) {
+    mediaSource.prepareSource(player, isTopLevelSource, new Listener() {
+      @Override public void onSourceInfoRefreshed(Timeline timeline, Object manifest) {
+        windowCount = timeline.getWindowCount();
+        listener.onSourceInfoRefreshed(timeline, manifest);
+      }
+    });
+  }
+
+  @Override public void maybeThrowSourceInfoRefreshError() throws IOException {
+    mediaSource.maybeThrowSourceInfoRefreshError();
+  }
+
+  @Override public MediaPeriod createPeriod(int index, Allocator allocator, long positionUs) {
+    return mediaSource.createPeriod(index, allocator, positionUs);
+  }
+
+  @Override public void releasePeriod(MediaPeriod mediaPeriod) {
+    mediaSource.releasePeriod(mediaPeriod);
+  }
+
+  @Override public void releaseSource() {
+    mediaSource.releaseSource();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import java.io.File;
+
+/**
+ * Process wide on-disk cache of media bytes, least recently used bytes are evicted first. Players
+ * of {@link ExoPlayerView#setMedia(Media, boolean)} read through it, so that bytes loaded ahead of
+ * time by a {@link PrefetchScheduler} (or by a previous playback) are not downloaded again.
+ */
+public final class MediaCache {
+
+  public static final long DEFAULT_MAX_BYTES = 100 * 1024 * 1024;
+
+  private static final String CACHE_DIR = "toro_media";
+
+  private static volatile MediaCache sInstance;
+
+  public static MediaCache with(@NonNull Context context) {
+    if (sInstance == null) {
+      synchronized (MediaCache.class) {
+        if (sInstance == null) {
+          sInstance = new MediaCache(context.getApplicationContext());
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  private final Cache cache;
+
+  private MediaCache(Context context) {
+    // A cache directory must be used by a single SimpleCache instance.
+    this.cache = new SimpleCache(new File(context.getCacheDir(), CACHE_DIR),
+        new LeastRecentlyUsedCacheEvictor(DEFAULT_MAX_BYTES));
+  }
+
+  @NonNull public Cache getCache() {
+    return cache;
+  }
+
+  /**
+   * @param upstreamFactory used to load the bytes which are not cached yet.
+   * @return a DataSource factory reading through this cache. Cache errors fall back to upstream.
+   */
+  @NonNull public DataSource.Factory buildDataSourceFactory(
+      @NonNull DataSource.Factory upstreamFactory) {
+    return new CacheDataSourceFactory(cache, upstreamFactory,
+        CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.source.MediaSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU of the MediaSources built for the Media played by {@link ExoPlayerView}s, so that
+ * re-binding or re-electing the same Media reuses its MediaSource instead of building and
+ * resolving a new one. See {@link ExoPlayerView#setMedia(Media, boolean)}.
+ *
+ * A MediaSource can only be prepared by one player at a time, so a cached one is owned by the
+ * View it was given to (or by its parked player, see {@link PlayerHandoff}) until that player is
+ * released. Other Views asking for the same Media meanwhile get a new, uncached MediaSource.
+ *
+ * Accessed from main thread only.
+ */
+public final class MediaSourceCache {
+
+  static final int MAX_ENTRIES = 16;
+
+  static final class Entry {
+
+    @Nullable MediaSource mediaSource;
+    @Nullable Object owner;
+  }
+
+  // Evicted entries which are in use stay with their owner, they are just not reused anymore.
+  private static final Map<Media, Entry> entries =
+      new LinkedHashMap<Media, Entry>(MAX_ENTRIES, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Media, Entry> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+  private static final Handler handler = new Handler(Looper.getMainLooper());
+
+  private MediaSourceCache() {
+    throw new RuntimeException("Meh");
+  }
+
+  /**
+   * Stop reusing the MediaSource of this Media, e.g. once the Media has changed on server side.
+   * A player using it keeps playing.
+   *
+   * @param media the Media.
+   */
+  public static void invalidate(@NonNull Media media) {
+    entries.remove(media);
+  }
+
+  public static void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Get the MediaSource of a Media for a player, reading through the {@link MediaCache}.
+   *
+   * @param context the Context.
+   * @param media the Media to play.
+   * @param owner the View which will prepare the MediaSource.
+   * @return the cached MediaSource of this Media if it is not used by another owner, a new one
+   * otherwise.
+   */
+  @NonNull static MediaSource acquire(@NonNull Context context, @NonNull Media media,
+      @NonNull Object owner) {
+    Entry entry = claim(media, owner);
+    if (entry == null) {
+      // Prepared by another player, this one needs its own.
+      return buildMediaSource(context, media);
+    }
+
+    if (entry.mediaSource == null) {
+      entry.mediaSource = buildMediaSource(context, media);
+    }
+
+    return entry.mediaSource;
+  }
+
+  /**
+   * @return the entry of this Media, now owned by {@code owner}, or {@code null} if it is owned
+   * by another one.
+   */
+  @Nullable static Entry claim(@NonNull Media media, @NonNull Object owner) {
+    Entry entry = entries.get(media);
+    if (entry != null && entry.owner != null && entry.owner != owner) {
+      return null;
+    }
+
+    if (entry == null) {
+      entry = new Entry();
+      entries.put(media, entry);
+    }
+
+    entry.owner = owner;
+    return entry;
+  }
+
+  /**
+   * Give back the MediaSources owned by a released player, so that next players of their Media
+   * reuse them.
+   *
+   * @param owner the owner the MediaSources were acquired with.
+   */
+  static void release(@NonNull Object owner) {
+    for (Entry entry : entries.values()) {
+      if (entry.owner == owner) {
+        entry.owner = null;
+      }
+    }
+  }
+
+  /**
+   * Give back one MediaSource of an owner which moved on to another one.
+   *
+   * @param owner the owner the MediaSource was acquired with.
+   * @param mediaSource the MediaSource the owner doesn't prepare anymore.
+   */
+  static void release(@NonNull Object owner, @NonNull MediaSource mediaSource) {
+    for (Entry entry : entries.values()) {
+      if (entry.owner == owner && entry.mediaSource == mediaSource) {
+        entry.owner = null;
+      }
+    }
+  }
+
+  /**
+   * Move the MediaSources of a player to its new owner, see {@link PlayerHandoff}.
+   */
+  static void transfer(@NonNull Object from, @NonNull Object to) {
+    for (Entry entry : entries.values()) {
+      if (entry.owner == from) {
+        entry.owner = to;
+      }
+    }
+  }
+
+  private static MediaSource buildMediaSource(Context context, Media media) {
+    return ExoPlayerHelper.buildMediaSource(context, media.getMediaUri(),
+        MediaCache.with(context)
+            .buildDataSourceFactory(ExoPlayerHelper.buildDataSourceFactory(context, true)),
+        handler, null);
+  }
+}
@@ -23,6 +23,18 @@ import com.google.android.exoplayer2.ExoPlayer;
  */
 public interface PlayerCallback {
 
+  /**
+   * Invoked on main thread once a View which builds its player off the main thread (see {@link
+   * ExoPlayerView#initializePlayer()}) has created and prepared it. State changes follow as usual.
+   */
+  void onPlayerInitialized();
+
+  /**
+   * Invoked on main thread once the View released its player, including when it did so by itself
+   * (e.g. on detach or on completion), so that resources held for that player can be given back.
+   */
+  void onPlayerReleased();
+
   /**
    * @param playWhenReady Whether playback will proceed when ready.
    * @param playbackState One of the {@link State} constants defined in the {@link ExoPlayer}
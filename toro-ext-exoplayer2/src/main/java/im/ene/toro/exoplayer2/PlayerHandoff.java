@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds players being handed off from a View to another (e.g. from a list to a detail screen and
+ * back), keyed by a client defined key. A parked player keeps playing, without any surface, until
+ * it is taken over. Players not taken over in time are released. A player can also be parked
+ * without timeout, its destination then takes it over or {@link #release(String)}s it, e.g. once
+ * the destination screen is gone.
+ *
+ * See {@link ExoPlayerViewHolder#handOff(String)} and {@link ExoPlayerViewHolder#takeOver(String)}.
+ */
+public final class PlayerHandoff {
+
+  /**
+   * Time a parked player waits to be taken over, see {@link ExoPlayerView#handOff(String)}.
+   */
+  public static final long DEFAULT_PARK_TIMEOUT_MS = 5000;
+
+  /**
+   * Park timeout to keep a player until it is taken over or released, see {@link
+   * ExoPlayerView#handOff(String, long)}.
+   */
+  public static final long NO_TIMEOUT = 0;
+
+  static final class Entry {
+
+    final SimpleExoPlayer player;
+    final MappingTrackSelector trackSelector;
+    @Nullable final MediaSource mediaSource;
+    @Nullable final Media media;
+    @Nullable final FrameRateCappedTrackSelectionFactory videoTrackSelectionFactory;
+    @Nullable final ToroLoadControl loadControl;
+    // Set if the player loops its MediaSource.
+    @Nullable LoopedMediaSource loopedSource;
+
+    Entry(SimpleExoPlayer player, MappingTrackSelector trackSelector,
+        @Nullable MediaSource mediaSource, @Nullable Media media,
+        @Nullable FrameRateCappedTrackSelectionFactory videoTrackSelectionFactory,
+        @Nullable ToroLoadControl loadControl) {
+      this.player = player;
+      this.trackSelector = trackSelector;
+      this.mediaSource = mediaSource;
+      this.media = media;
+      this.videoTrackSelectionFactory = videoTrackSelectionFactory;
+      this.loadControl = loadControl;
+    }
+  }
+
+  private static final Map<String, Entry> entries = new HashMap<>();
+  private static final Handler handler = new Handler(Looper.getMainLooper());
+
+  private PlayerHandoff() {
+    throw new RuntimeException("Meh");
+  }
+
+  static void park(@NonNull final String key, @NonNull final Entry entry, long timeoutMs) {
+    Entry old = entries.put(key, entry);
+    if (old != null && old != entry) {
+      old.player.release();
+      MediaSourceCache.release(old);
+    }
+
+    if (timeoutMs <= NO_TIMEOUT) {
+      return;
+    }
+
+    handler.postDelayed(new Runnable() {
+      @Override public void run() {
+        // Nobody took it over, release it.
+        if (entries.get(key) == entry) {
+          release(key);
+        }
+      }
+    }, timeoutMs);
+  }
+
+  /**
+   * @param key the key the player was parked with.
+   * @param media the Media the taking View is going to play, or {@code null} to take any player.
+   * @return the parked player, or {@code null} if there is none, or if it plays another Media. A
+   * player of another Media stays parked.
+   */
+  @Nullable static Entry take(@NonNull String key, @Nullable Media media) {
+    Entry entry = entries.get(key);
+    if (entry == null || (media != null && entry.media != null && !media.equals(entry.media))) {
+      return null;
+    }
+
+    return entries.remove(key);
+  }
+
+  /**
+   * @param key the key used to hand off a player.
+   * @return {@code true} if a player handed off with this key is waiting to be taken over.
+   */
+  public static boolean isParked(@NonNull String key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Release the player handed off with this key, if it has not been taken over.
+   *
+   * @param key the key used to hand off a player.
+   */
+  public static void release(@NonNull String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      entry.player.release();
+      MediaSourceCache.release(entry);
+    }
+  }
+}
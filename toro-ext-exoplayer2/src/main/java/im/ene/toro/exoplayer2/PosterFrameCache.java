@@ -0,0 +1,397 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Extract a poster frame per Media off the main thread, and keep it in a memory LRU cache backed
+ * by a disk cache. Player Views show this frame in place of the black shutter until the first
+ * video frame is rendered, so a Media doesn't need to be prepared just to avoid a black tile.
+ *
+ * Frames are extracted using {@link MediaMetadataRetriever}, which supports progressive media
+ * (local files or http(s) urls). Adaptive streams (DASH, HLS, SmoothStreaming) will not get a
+ * poster frame: a Media whose extraction failed is not tried again for 10 minutes.
+ *
+ * The disk cache keeps one frame per Media, big enough for a full screen View. The memory cache
+ * keeps it downsampled to the size of each View showing it.
+ */
+public final class PosterFrameCache {
+
+  private static final String TAG = "ToroLib@Poster";
+
+  private static final String DISK_CACHE_DIR = "toro_poster_frames";
+  private static final long MAX_DISK_CACHE_SIZE = 20 * 1024 * 1024;
+  private static final int JPEG_QUALITY = 80;
+  private static final int MAX_FAILED_MEDIA = 128;
+  private static final long FAILURE_TTL_MS = 10 * 60 * 1000;
+
+  /**
+   * Callback for a poster frame request, always called on the main thread.
+   */
+  public interface Callback {
+
+    void onPosterFrameLoaded(@NonNull String mediaId, @NonNull Bitmap frame);
+  }
+
+  private static volatile PosterFrameCache sInstance;
+
+  public static PosterFrameCache with(@NonNull Context context) {
+    if (sInstance == null) {
+      synchronized (PosterFrameCache.class) {
+        if (sInstance == null) {
+          sInstance = new PosterFrameCache(context.getApplicationContext());
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  private final Context context;
+  private final File diskCacheDir;
+  private final LruCache<String, Bitmap> memoryCache;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final ExecutorService executor;
+  // Pending requests per memory cache key, accessed from main thread only.
+  private final Map<String, List<Callback>> pendingCallbacks = new HashMap<>();
+  // Time the extraction failed at per Media, accessed from main thread only.
+  private final Map<String, Long> failedMediaIds =
+      new LinkedHashMap<String, Long>(MAX_FAILED_MEDIA, 0.75f, false) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+          return size() > MAX_FAILED_MEDIA;
+        }
+      };
+
+  private PosterFrameCache(Context context) {
+    this.context = context;
+    this.diskCacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
+    // Use 1/16 of available heap for poster frames
+    int maxMemoryCacheSize =
+        (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+    this.memoryCache = new LruCache<String, Bitmap>(maxMemoryCacheSize) {
+      @Override protected int sizeOf(String key, Bitmap value) {
+        return value.getRowBytes() * value.getHeight();
+      }
+    };
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override public Thread newThread(@NonNull Runnable runnable) {
+        Thread thread = new Thread(runnable, "Toro:PosterFrame");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @param mediaId the Media's id, see {@link im.ene.toro.ToroPlayer#getMediaId()}.
+   * @param width width of the View showing the frame.
+   * @param height height of the View showing the frame.
+   * @return the poster frame of this Media for this size if it is in memory, {@code null}
+   * otherwise.
+   */
+  @Nullable public Bitmap get(@NonNull String mediaId, int width, int height) {
+    return memoryCache.get(toKey(mediaId, width, height));
+  }
+
+  /**
+   * Load the poster frame of a Media, from memory, disk, or by extracting it from the Media.
+   * Must be called from main thread.
+   *
+   * @param mediaId the Media's id, see {@link im.ene.toro.ToroPlayer#getMediaId()}.
+   * @param uri the Media's uri, used to extract the frame if it is not cached.
+   * @param width width of the View showing the frame, used to downsample it.
+   * @param height height of the View showing the frame, used to downsample it.
+   * @param callback called once the frame is available. Not called if it can not be extracted.
+   */
+  public void load(@NonNull final String mediaId, @NonNull final Uri uri, final int width,
+      final int height, @NonNull Callback callback) {
+    Long failedAt = failedMediaIds.get(mediaId);
+    if (failedAt != null) {
+      if (SystemClock.elapsedRealtime() - failedAt < FAILURE_TTL_MS) {
+        return;
+      }
+      failedMediaIds.remove(mediaId);
+    }
+
+    final String key = toKey(mediaId, width, height);
+    Bitmap cached = memoryCache.get(key);
+    if (cached != null) {
+      callback.onPosterFrameLoaded(mediaId, cached);
+      return;
+    }
+
+    List<Callback> callbacks = pendingCallbacks.get(key);
+    if (callbacks != null) {
+      // Already in progress
+      callbacks.add(callback);
+      return;
+    }
+
+    callbacks = new ArrayList<>();
+    callbacks.add(callback);
+    pendingCallbacks.put(key, callbacks);
+    final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        // Landscape full screen is the biggest a View showing the frame gets.
+        int maxWidth = Math.max(metrics.widthPixels, metrics.heightPixels);
+        int maxHeight = Math.min(metrics.widthPixels, metrics.heightPixels);
+        final Bitmap frame = loadOrExtract(mediaId, uri, width, height, maxWidth, maxHeight);
+        mainHandler.post(new Runnable() {
+          @Override public void run() {
+            List<Callback> callbacks = pendingCallbacks.remove(key);
+            if (frame == null) {
+              failedMediaIds.put(mediaId, SystemClock.elapsedRealtime());
+              return;
+            }
+
+            memoryCache.put(key, frame);
+            if (callbacks == null) {
+              return;
+            }
+
+            for (Callback callback : callbacks) {
+              callback.onPosterFrameLoaded(mediaId, frame);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Cancel the delivery of a pending request. The frame will still be cached once available.
+   *
+   * @param mediaId the Media's id.
+   * @param callback the callback passed to {@link #load(String, Uri, int, int, Callback)}.
+   */
+  public void cancel(@NonNull String mediaId, @NonNull Callback callback) {
+    for (Map.Entry<String, List<Callback>> entry : pendingCallbacks.entrySet()) {
+      if (mediaId.equals(toMediaId(entry.getKey()))) {
+        entry.getValue().remove(callback);
+      }
+    }
+  }
+
+  public void clearMemory() {
+    memoryCache.evictAll();
+  }
+
+  // Worker thread
+
+  @Nullable Bitmap loadOrExtract(String mediaId, Uri uri, int width, int height, int maxWidth,
+      int maxHeight) {
+    File file = new File(diskCacheDir, toFileName(mediaId));
+    if (file.exists()) {
+      Bitmap frame = decodeFile(file, width, height);
+      if (frame != null) {
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return downsampleAndRecycle(frame, width, height);
+      }
+    }
+
+    Bitmap frame = extract(uri);
+    if (frame == null) {
+      return null;
+    }
+
+    // The disk copy serves Views of any size, up to full screen.
+    frame = downsampleAndRecycle(frame, maxWidth, maxHeight);
+    writeToDisk(file, frame);
+    return downsampleAndRecycle(frame, width, height);
+  }
+
+  private static Bitmap downsampleAndRecycle(Bitmap frame, int width, int height) {
+    Bitmap scaled = downsample(frame, width, height);
+    if (scaled != frame) {
+      frame.recycle();
+    }
+    return scaled;
+  }
+
+  @Nullable private Bitmap extract(Uri uri) {
+    MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+    try {
+      String scheme = uri.getScheme();
+      if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) {
+        retriever.setDataSource(uri.toString(), new HashMap<String, String>());
+      } else {
+        retriever.setDataSource(context, uri);
+      }
+      // Let the retriever pick a representative frame
+      return retriever.getFrameAtTime();
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to extract poster frame: " + uri, e);
+      return null;
+    } finally {
+      try {
+        retriever.release();
+      } catch (RuntimeException ignored) {
+      }
+    }
+  }
+
+  private void writeToDisk(File file, Bitmap frame) {
+    if (!diskCacheDir.exists() && !diskCacheDir.mkdirs()) {
+      return;
+    }
+
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(file);
+      frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to cache poster frame: " + file, e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+
+    trimDiskCache();
+  }
+
+  // Remove least recently used files until the disk cache fits its budget.
+  private void trimDiskCache() {
+    File[] files = diskCacheDir.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+
+    if (size <= MAX_DISK_CACHE_SIZE) {
+      return;
+    }
+
+    Arrays.sort(files, new Comparator<File>() {
+      @Override public int compare(File lhs, File rhs) {
+        return Long.valueOf(lhs.lastModified()).compareTo(rhs.lastModified());
+      }
+    });
+
+    for (File file : files) {
+      if (size <= MAX_DISK_CACHE_SIZE) {
+        break;
+      }
+
+      long length = file.length();
+      if (file.delete()) {
+        size -= length;
+      }
+    }
+  }
+
+  @Nullable private static Bitmap decodeFile(File file, int width, int height) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeFile(file.getPath(), options);
+    options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight, width, height);
+    options.inJustDecodeBounds = false;
+    return BitmapFactory.decodeFile(file.getPath(), options);
+  }
+
+  private static int calculateSampleSize(int srcWidth, int srcHeight, int width, int height) {
+    int sampleSize = 1;
+    if (width <= 0 || height <= 0) {
+      return sampleSize;
+    }
+
+    while (srcWidth / (sampleSize * 2) >= width && srcHeight / (sampleSize * 2) >= height) {
+      sampleSize *= 2;
+    }
+
+    return sampleSize;
+  }
+
+  private static Bitmap downsample(Bitmap frame, int width, int height) {
+    if (width <= 0 || height <= 0) {
+      return frame;
+    }
+
+    // Keep aspect ratio, and still cover the requested size
+    float scale = Math.max((float) width / frame.getWidth(), (float) height / frame.getHeight());
+    if (scale >= 1.f) {
+      return frame;
+    }
+
+    int scaledWidth = Math.max(1, Math.round(frame.getWidth() * scale));
+    int scaledHeight = Math.max(1, Math.round(frame.getHeight() * scale));
+    return Bitmap.createScaledBitmap(frame, scaledWidth, scaledHeight, true);
+  }
+
+  // Frames are kept in memory per Media and per size of the Views showing them.
+  private static String toKey(String mediaId, int width, int height) {
+    return mediaId + "@" + width + "x" + height;
+  }
+
+  // A Media id may contain '@' too, the size is after the last one.
+  static String toMediaId(String key) {
+    return key.substring(0, key.lastIndexOf('@'));
+  }
+
+  private static String toFileName(String mediaId) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      byte[] bytes = digest.digest(mediaId.getBytes());
+      StringBuilder builder = new StringBuilder();
+      for (byte b : bytes) {
+        builder.append(String.format("%02x", b));
+      }
+      return builder.append(".jpg").toString();
+    } catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(mediaId.hashCode()) + ".jpg";
+    }
+  }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+import im.ene.toro.AutoplayPolicy;
+import im.ene.toro.Toro;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Download the first bytes of the Media of upcoming items of a RecyclerView into the {@link
+ * MediaCache}, so that they start from local bytes once elected. Unlike preparing players ahead,
+ * this costs no decoder nor surface.
+ *
+ * Items are scheduled once scrolling stops, nearest to the viewport first, in the direction of the
+ * last scroll. Everything scheduled is cancelled as soon as scrolling starts again. Downloads only
+ * make progress while players are not loading anything, see {@link ToroBandwidthMeter#isIdle()}:
+ * a download is closed once players load again, and re-opened where it stopped once they are done.
+ * How many items are prefetched follows {@link AutoplayPolicy#getPrefetchDepth()}.
+ *
+ * DASH and SmoothStreaming Media get their manifest prefetched instead (see {@link
+ * ExoPlayerHelper#prefetchManifest(Context, Uri, String)}), HLS Media are skipped.
+ *
+ * Must be used from main thread.
+ */
+public final class PrefetchScheduler extends RecyclerView.OnScrollListener {
+
+  private static final String TAG = "ToroLib@Prefetch";
+
+  public static final long DEFAULT_PREFETCH_BYTES = 512 * 1024;
+  public static final int DEFAULT_MAX_ITEMS = 4;
+
+  private static final int CHUNK_SIZE = 32 * 1024;
+  private static final long IDLE_POLL_MS = 250;
+  // Remember this many prefetched uris, so they are not read from the cache again.
+  private static final int MAX_DONE_URIS = 256;
+  private static final long WORKER_KEEP_ALIVE_MS = 10 * 1000;
+
+  // A single worker for all schedulers, taking the nearest item first. It stops once idle, so
+  // schedulers need no shutdown.
+  private static final ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+          new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override public Thread newThread(@NonNull Runnable runnable) {
+          Thread thread = new Thread(runnable, "Toro:Prefetch");
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        }
+      });
+
+  static {
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Provide the Media of an adapter position.
+   */
+  public interface MediaProvider {
+
+    /**
+     * @param position the adapter position.
+     * @return the Media of this position, or {@code null} if it has none.
+     */
+    @Nullable Media getMedia(int position);
+  }
+
+  private final class Task implements Runnable, Comparable<Task> {
+
+    final Uri uri;
+    final int distance;
+    volatile boolean cancelled;
+
+    Task(Uri uri, int distance) {
+      this.uri = uri;
+      this.distance = distance;
+    }
+
+    @Override public int compareTo(@NonNull Task other) {
+      return distance - other.distance;
+    }
+
+    @Override public void run() {
+      if (!cancelled) {
+        prefetch(this);
+      }
+    }
+  }
+
+  private final Context context;
+  private final MediaProvider mediaProvider;
+  private final ToroBandwidthMeter bandwidthMeter;
+  private final DataSource.Factory dataSourceFactory;
+  private final List<Task> tasks = new ArrayList<>();
+  // Accessed from worker thread only.
+  private final Set<Uri> doneUris = new HashSet<>();
+
+  private volatile long prefetchBytes = DEFAULT_PREFETCH_BYTES;
+  private int maxItems = DEFAULT_MAX_ITEMS;
+  private int scrollDirection = 1;
+
+  public PrefetchScheduler(@NonNull Context context, @NonNull MediaProvider mediaProvider) {
+    this.context = context.getApplicationContext();
+    this.mediaProvider = mediaProvider;
+    this.bandwidthMeter = ToroBandwidthMeter.with(this.context);
+    // Not metered: prefetching doesn't stand for the bandwidth players get.
+    this.dataSourceFactory = MediaCache.with(this.context)
+        .buildDataSourceFactory(ExoPlayerHelper.buildDataSourceFactory(this.context, false));
+  }
+
+  /**
+   * @param prefetchBytes how many bytes of each Media to prefetch.
+   */
+  public void setPrefetchBytes(long prefetchBytes) {
+    if (prefetchBytes <= 0) {
+      throw new IllegalArgumentException("Must prefetch some bytes: " + prefetchBytes);
+    }
+    this.prefetchBytes = prefetchBytes;
+  }
+
+  /**
+   * @param maxItems how many items to prefetch on an unmetered network, on a usual power level.
+   */
+  public void setMaxItems(int maxItems) {
+    this.maxItems = maxItems;
+  }
+
+  public void attach(@NonNull RecyclerView view) {
+    view.addOnScrollListener(this);
+    schedule(view);
+  }
+
+  public void detach(@NonNull RecyclerView view) {
+    view.removeOnScrollListener(this);
+    cancel();
+  }
+
+  @Override public void onScrollStateChanged(RecyclerView view, int newState) {
+    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+      schedule(view);
+    } else {
+      // User is scrolling away, what was scheduled may not be upcoming anymore.
+      cancel();
+    }
+  }
+
+  @Override public void onScrolled(RecyclerView view, int dx, int dy) {
+    int delta = dy != 0 ? dy : dx;
+    if (delta != 0) {
+      scrollDirection = delta > 0 ? 1 : -1;
+    }
+  }
+
+  private void schedule(RecyclerView view) {
+    cancel();
+    RecyclerView.Adapter adapter = view.getAdapter();
+    int count = maxItems * Toro.getAutoplayPolicy().getPrefetchDepth()
+        / AutoplayPolicy.MAX_PREFETCH_DEPTH;
+    if (adapter == null || count <= 0 || view.getChildCount() == 0) {
+      return;
+    }
+
+    // Visible range of adapter positions, whatever the LayoutManager is.
+    int first = Integer.MAX_VALUE;
+    int last = RecyclerView.NO_POSITION;
+    for (int i = 0; i < view.getChildCount(); i++) {
+      int position = view.getChildAdapterPosition(view.getChildAt(i));
+      if (position != RecyclerView.NO_POSITION) {
+        first = Math.min(first, position);
+        last = Math.max(last, position);
+      }
+    }
+
+    if (last == RecyclerView.NO_POSITION) {
+      return;
+    }
+
+    for (int distance = 1; distance <= count; distance++) {
+      int position = scrollDirection > 0 ? last + distance : first - distance;
+      if (position < 0 || position >= adapter.getItemCount()) {
+        break;
+      }
+
+      Media media = mediaProvider.getMedia(position);
+      if (media == null) {
+        continue;
+      }
+
+      Uri uri = media.getMediaUri();
+      switch (Util.inferContentType(uri.getLastPathSegment())) {
+        case C.TYPE_DASH:
+        case C.TYPE_SS:
+          ExoPlayerHelper.prefetchManifest(context, uri, null);
+          break;
+        case C.TYPE_OTHER:
+          Task task = new Task(uri, distance);
+          tasks.add(task);
+          executor.execute(task);
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private void cancel() {
+    for (Task task : tasks) {
+      task.cancelled = true;
+      executor.remove(task);
+    }
+    tasks.clear();
+  }
+
+  // Worker thread
+
+  private void prefetch(Task task) {
+    if (doneUris.contains(task.uri)) {
+      return;
+    }
+
+    long length = prefetchBytes;
+    long position = 0;
+    boolean done = false;
+    byte[] buffer = new byte[CHUNK_SIZE];
+    try {
+      while (!done && !task.cancelled) {
+        // Leave the network to players, without holding a connection open meanwhile.
+        while (!bandwidthMeter.isIdle() && !task.cancelled) {
+          Thread.sleep(IDLE_POLL_MS);
+        }
+
+        if (task.cancelled) {
+          break;
+        }
+
+        // Players took the network back in the middle of last read, continue where it stopped.
+        DataSource dataSource = dataSourceFactory.createDataSource();
+        try {
+          dataSource.open(new DataSpec(task.uri, position, length - position, null));
+          while (!task.cancelled && bandwidthMeter.isIdle()) {
+            int read = dataSource.read(buffer, 0, buffer.length);
+            if (read == C.RESULT_END_OF_INPUT) {
+              done = true;
+              break;
+            }
+            position += read;
+          }
+        } finally {
+          Util.closeQuietly(dataSource);
+        }
+
+        done |= position >= length;
+      }
+
+      if (done) {
+        if (doneUris.size() >= MAX_DONE_URIS) {
+          doneUris.clear();
+        }
+        doneUris.add(task.uri);
+      }
+    } catch (IOException e) {
+      // Not fatal, the player will load it.
+      Log.w(TAG, "Failed to prefetch: " + task.uri, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
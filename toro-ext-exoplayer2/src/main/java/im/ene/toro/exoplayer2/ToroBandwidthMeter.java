@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import im.ene.toro.BandwidthEstimator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DefaultBandwidthMeter} seeded by the persisted {@link BandwidthEstimator}: until its own
+ * transfers give an estimate, the one of the current network from previous sessions is returned,
+ * so that the first adaptive track selection isn't a blind guess. Its samples are fed back to the
+ * BandwidthEstimator.
+ *
+ * A single instance is shared by all players, as the {@link DefaultBandwidthMeter} was.
+ */
+public final class ToroBandwidthMeter implements BandwidthMeter, TransferListener<Object> {
+
+  private static volatile ToroBandwidthMeter sInstance;
+
+  public static ToroBandwidthMeter with(@NonNull Context context) {
+    if (sInstance == null) {
+      synchronized (ToroBandwidthMeter.class) {
+        if (sInstance == null) {
+          sInstance = new ToroBandwidthMeter(BandwidthEstimator.with(context));
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  private final BandwidthEstimator estimator;
+  private final DefaultBandwidthMeter delegate;
+  // Transfers of all players in progress, called from their loader threads.
+  private final AtomicInteger activeTransfers = new AtomicInteger();
+
+  private ToroBandwidthMeter(final BandwidthEstimator estimator) {
+    this.estimator = estimator;
+    this.delegate = new DefaultBandwidthMeter(new Handler(Looper.getMainLooper()),
+        new BandwidthMeter.EventListener() {
+          @Override public void onBandwidthSample(int elapsedMs, long bytes, long bitrate) {
+            estimator.addSample(bytes, elapsedMs);
+          }
+        });
+  }
+
+  @Override public long getBitrateEstimate() {
+    long estimate = delegate.getBitrateEstimate();
+    return estimate != NO_ESTIMATE ? estimate : estimator.getBitrateEstimate();
+  }
+
+  /**
+   * @return {@code true} if no player is loading anything right now.
+   */
+  public boolean isIdle() {
+    return activeTransfers.get() == 0;
+  }
+
+  @Override public void onTransferStart(Object source, DataSpec dataSpec) {
+    activeTransfers.incrementAndGet();
+    delegate.onTransferStart(source, dataSpec);
+  }
+
+  @Override public void onBytesTransferred(Object source, int bytesTransferred) {
+    delegate.onBytesTransferred(source, bytesTransferred);
+  }
+
+  @Override public void onTransferEnd(Object source) {
+    delegate.onTransferEnd(source);
+    activeTransfers.decrementAndGet();
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro.exoplayer2;
+
+import android.support.annotation.NonNull;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.util.Util;
+import im.ene.toro.BufferBudget;
+import im.ene.toro.BufferProfile;
+
+/**
+ * A {@link LoadControl} applying a {@link BufferProfile}, which can be switched at any time
+ * (e.g. to {@link BufferProfile#FEED_PREVIEW} while the player is in preview quality) without a
+ * new player: the new targets simply apply from the next loading decision. Allocations are
+ * reported to a {@link BufferBudget} shared by all players, the elected player having priority.
+ *
+ * The allocator (and its lifecycle) is the one of a {@link DefaultLoadControl}. A profile without
+ * byte limit is capped by the target buffer size a DefaultLoadControl would use.
+ */
+final class ToroLoadControl implements LoadControl {
+
+  private final DefaultLoadControl delegate;
+  private final BufferBudget budget;
+  private volatile BufferProfile profile;
+  private volatile boolean previewMode;
+  private volatile boolean priority;
+  // Playback thread
+  private boolean isBuffering;
+  private int targetBufferSize;
+
+  ToroLoadControl(@NonNull BufferProfile profile, @NonNull BufferBudget budget) {
+    this.delegate = new DefaultLoadControl();
+    this.profile = profile;
+    this.budget = budget;
+  }
+
+  void setProfile(@NonNull BufferProfile profile) {
+    this.profile = profile;
+  }
+
+  void setPreviewMode(boolean previewMode) {
+    this.previewMode = previewMode;
+  }
+
+  /**
+   * @param priority {@code true} if the player is the elected one, and should be served first.
+   */
+  void setPriority(boolean priority) {
+    this.priority = priority;
+  }
+
+  private BufferProfile getActiveProfile() {
+    return previewMode ? BufferProfile.FEED_PREVIEW : profile;
+  }
+
+  @Override public void onPrepared() {
+    reset();
+    delegate.onPrepared();
+  }
+
+  @Override public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+      TrackSelectionArray trackSelections) {
+    delegate.onTracksSelected(renderers, trackGroups, trackSelections);
+    // Same as DefaultLoadControl's, which doesn't expose it.
+    targetBufferSize = 0;
+    for (int i = 0; i < renderers.length; i++) {
+      if (trackSelections.get(i) != null) {
+        targetBufferSize += Util.getDefaultBufferSize(renderers[i].getTrackType());
+      }
+    }
+  }
+
+  @Override public void onStopped() {
+    reset();
+    delegate.onStopped();
+  }
+
+  @Override public void onReleased() {
+    reset();
+    delegate.onReleased();
+  }
+
+  @Override public Allocator getAllocator() {
+    return delegate.getAllocator();
+  }
+
+  @Override public boolean shouldStartPlayback(long bufferedDurationUs, boolean rebuffering) {
+    BufferProfile profile = getActiveProfile();
+    long minBufferDurationUs =
+        (rebuffering ? profile.bufferForPlaybackAfterRebufferMs : profile.bufferForPlaybackMs)
+            * 1000L;
+    return bufferedDurationUs >= minBufferDurationUs;
+  }
+
+  @Override public boolean shouldContinueLoading(long bufferedDurationUs) {
+    BufferProfile profile = getActiveProfile();
+    int allocatedBytes = getAllocator().getTotalBytesAllocated();
+    int maxBytes = profile.maxBytes > 0 ? profile.maxBytes : targetBufferSize;
+    boolean withinBudget = budget.requestLoad(this, allocatedBytes, priority)  //
+        && (maxBytes == 0 || allocatedBytes < maxBytes);
+
+    if (bufferedDurationUs < profile.bufferForPlaybackAfterRebufferMs * 1000L) {
+      // Never starve a player below what it needs to play.
+      isBuffering = true;
+    } else if (bufferedDurationUs < profile.minBufferMs * 1000L) {
+      isBuffering = withinBudget;
+    } else {
+      isBuffering = isBuffering && withinBudget && bufferedDurationUs < profile.maxBufferMs * 1000L;
+    }
+    return isBuffering;
+  }
+
+  private void reset() {
+    isBuffering = false;
+    targetBufferSize = 0;
+    budget.release(this);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro.exoplayer2;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.util.MimeTypes;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class FrameRateCappedTrackSelectionFactoryTest {
+
+  private TrackSelection.Factory delegate;
+  private FrameRateCappedTrackSelectionFactory factory;
+  // 24fps, 60fps, unknown frame rate, 30fps
+  private TrackGroup group;
+
+  @Before public void setUp() {
+    delegate = mock(TrackSelection.Factory.class);
+    factory = new FrameRateCappedTrackSelectionFactory(delegate);
+    group = new TrackGroup(videoFormat(1000000, 24), videoFormat(2000000, 60),
+        videoFormat(3000000, Format.NO_VALUE), videoFormat(4000000, 30));
+  }
+
+  @Test public void noCap_delegatesAllTracks() {
+    factory.createTrackSelection(group, 0, 1, 2, 3);
+    verify(delegate).createTrackSelection(group, 0, 1, 2, 3);
+  }
+
+  @Test public void cap_dropsFasterTracks() {
+    factory.setMaxFrameRate(30);
+    factory.createTrackSelection(group, 0, 1, 2, 3);
+    // Tracks with unknown frame rate are kept.
+    verify(delegate).createTrackSelection(group, 0, 2, 3);
+  }
+
+  @Test public void cap_fixesASingleAllowedTrack() {
+    factory.setMaxFrameRate(24);
+    TrackSelection selection = factory.createTrackSelection(group, 0, 1);
+
+    verifyZeroInteractions(delegate);
+    assertTrue(selection instanceof FixedTrackSelection);
+    assertEquals(0, selection.getSelectedIndexInTrackGroup());
+  }
+
+  @Test public void cap_fallsBackToTheLowestFrameRate() {
+    factory.setMaxFrameRate(20);
+    TrackSelection selection = factory.createTrackSelection(group, 1, 3, 0);
+
+    verifyZeroInteractions(delegate);
+    assertEquals(0, selection.getSelectedIndexInTrackGroup());
+  }
+
+  private static Format videoFormat(int bitrate, float frameRate) {
+    return Format.createVideoSampleFormat(null, MimeTypes.VIDEO_H264, null, bitrate,
+        Format.NO_VALUE, 1280, 720, frameRate, null, null);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro.exoplayer2;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.source.MediaSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class MediaSourceCacheTest {
+
+  private final Object owner = new Object();
+  private final Object other = new Object();
+  private Media media;
+
+  @Before public void setUp() {
+    media = new Media(mock(Uri.class));
+  }
+
+  @After public void tearDown() {
+    MediaSourceCache.clear();
+  }
+
+  @Test public void claim_isExclusiveUntilReleased() {
+    MediaSourceCache.Entry entry = MediaSourceCache.claim(media, owner);
+    assertNotNull(entry);
+    assertSame(entry, MediaSourceCache.claim(media, owner));
+    assertNull(MediaSourceCache.claim(media, other));
+
+    MediaSourceCache.release(owner);
+    assertSame(entry, MediaSourceCache.claim(media, other));
+  }
+
+  @Test public void transfer_movesOwnership() {
+    MediaSourceCache.claim(media, owner);
+    MediaSourceCache.transfer(owner, other);
+
+    assertNull(MediaSourceCache.claim(media, owner));
+    assertNotNull(MediaSourceCache.claim(media, other));
+  }
+
+  @Test public void release_ofOneMediaSource_keepsTheOthers() {
+    MediaSource mediaSource = mock(MediaSource.class);
+    MediaSourceCache.claim(media, owner).mediaSource = mediaSource;
+    Media next = new Media(mock(Uri.class));
+    MediaSourceCache.claim(next, owner).mediaSource = mock(MediaSource.class);
+
+    MediaSourceCache.release(owner, mediaSource);
+    assertNotNull(MediaSourceCache.claim(media, other));
+    assertNull(MediaSourceCache.claim(next, other));
+  }
+
+  @Test public void invalidate_forgetsTheMedia() {
+    MediaSourceCache.Entry entry = MediaSourceCache.claim(media, owner);
+    MediaSourceCache.invalidate(media);
+
+    // A player still using the old MediaSource doesn't block new ones.
+    MediaSourceCache.Entry renewed = MediaSourceCache.claim(media, other);
+    assertNotNull(renewed);
+    assertNull(renewed.mediaSource);
+    assertNotNull(entry);
+  }
+}
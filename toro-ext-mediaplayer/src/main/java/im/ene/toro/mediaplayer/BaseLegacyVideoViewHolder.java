@@ -123,6 +123,14 @@ public abstract class BaseLegacyVideoViewHolder extends ToroAdapter.ViewHolder
     helper.preparePlayer(playWhenReady);
   }
 
+  @Override public void preparePlayer(boolean playWhenReady, long position) {
+    helper.preparePlayer(playWhenReady);
+    // VideoView keeps this position and applies it as soon as its MediaPlayer is prepared.
+    if (position > 0) {
+      videoView.seekTo((int) position);
+    }
+  }
+
   @Override public void start() {
     videoView.start();
   }
@@ -20,6 +20,7 @@ import android.media.MediaPlayer;
 import android.support.annotation.FloatRange;
 import android.support.annotation.NonNull;
 import android.view.View;
+import im.ene.toro.PlaybackErrorPolicy;
 import im.ene.toro.PlayerViewHelper;
 import im.ene.toro.ToroPlayer;
 
@@ -72,4 +73,21 @@ public class LegacyVideoViewHelper extends PlayerViewHelper
   @Override public boolean onError(MediaPlayer mp, int what, int extra) {
     return super.onPlaybackError(new MediaPlayerException(extra));
   }
+
+  @Override protected int getErrorType(Exception error) {
+    if (error instanceof MediaPlayerException) {
+      switch (((MediaPlayerException) error).getErrorCode()) {
+        case MediaPlayer.MEDIA_ERROR_IO:
+        case MediaPlayer.MEDIA_ERROR_TIMED_OUT:
+          return PlaybackErrorPolicy.ERROR_TYPE_NETWORK;
+        case MediaPlayer.MEDIA_ERROR_MALFORMED:
+        case MediaPlayer.MEDIA_ERROR_UNSUPPORTED:
+          return PlaybackErrorPolicy.ERROR_TYPE_DECODER;
+        default:
+          break;
+      }
+    }
+
+    return super.getErrorType(error);
+  }
 }
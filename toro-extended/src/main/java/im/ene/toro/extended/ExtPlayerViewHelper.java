@@ -48,7 +48,8 @@ public class ExtPlayerViewHelper extends LongClickableViewHelper {
           // TODO implement this if need
           break;
         case THIS_PLAYER:
-          // immediately repeat
+          // ExtPlayerViewHolder loops natively through ExoPlayerView, this is only reached by
+          // players which stopped on completion.
           if (manager != null) {
             manager.restorePlaybackState(player.getMediaId());
             manager.startPlayback();
@@ -22,8 +22,10 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.source.MediaSource;
+import im.ene.toro.BackgroundAudioPlayer;
 import im.ene.toro.Toro;
 import im.ene.toro.ToroAdapter;
 import im.ene.toro.ToroUtil;
@@ -32,7 +34,8 @@ import im.ene.toro.exoplayer2.ExoPlayerView;
 /**
  * Created by eneim on 10/4/16.
  */
-public abstract class ExtPlayerViewHolder extends ToroAdapter.ViewHolder implements ExtToroPlayer {
+public abstract class ExtPlayerViewHolder extends ToroAdapter.ViewHolder
+    implements ExtToroPlayer, BackgroundAudioPlayer {
 
   @NonNull protected final ExoPlayerView playerView;
   protected final ExtPlayerViewHelper helper;
@@ -80,9 +83,30 @@ public abstract class ExtPlayerViewHolder extends ToroAdapter.ViewHolder impleme
 
   }
 
+  /**
+   * See {@link ExoPlayerView#setBackgroundAudioEnabled(boolean)}.
+   */
+  @Override public boolean isBackgroundAudioEnabled() {
+    return playerView.isBackgroundAudioEnabled();
+  }
+
   @Override public void preparePlayer(boolean playWhenReady) {
+    preparePlayer(playWhenReady, C.TIME_UNSET);
+  }
+
+  @Override public void preparePlayer(boolean playWhenReady, long position) {
+    if (playerView.isInitializing()) {
+      // The player of current Media is being built already.
+      return;
+    }
+
+    playerView.setLoopingEnabled(getNextTarget() == Target.THIS_PLAYER);
     try {
-      playerView.setMediaSource(getMediaSource(), playWhenReady);
+      if (position == C.TIME_UNSET) {
+        playerView.setMediaSource(getMediaSource(), playWhenReady);
+      } else {
+        playerView.setMediaSource(getMediaSource(), playWhenReady, position);
+      }
     } catch (ParserException e) {
       e.printStackTrace();
     }
@@ -146,6 +170,10 @@ public abstract class ExtPlayerViewHolder extends ToroAdapter.ViewHolder impleme
 
   @Override public void setVolume(@FloatRange(from = 0.f, to = 1.f) float volume) {
     this.playerView.setVolume(volume);
+    if (volume > 0.f) {
+      // Unmuting is an engagement, leave preview quality if any.
+      this.playerView.setQuality(ExoPlayerView.QUALITY_FULL);
+    }
   }
 
   @Override public int getPlayOrder() {
@@ -84,6 +84,10 @@ public abstract class ExtVideoViewHolder extends ToroAdapter.ViewHolder implemen
     playerView.preparePlayer(playWhenReady);
   }
 
+  @Override public void preparePlayer(boolean playWhenReady, long position) {
+    playerView.preparePlayer(playWhenReady, position);
+  }
+
   @Override public void releasePlayer() {
     playerView.releasePlayer();
     playable = false;
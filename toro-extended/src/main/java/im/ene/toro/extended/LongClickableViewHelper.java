@@ -23,6 +23,7 @@ import android.view.ViewParent;
 import im.ene.toro.PlayerManager;
 import im.ene.toro.Toro;
 import im.ene.toro.ToroPlayer;
+import im.ene.toro.exoplayer2.ExoPlayerView;
 import im.ene.toro.exoplayer2.ExoPlayerViewHelper;
 
 /**
@@ -48,6 +49,11 @@ public class LongClickableViewHelper extends ExoPlayerViewHelper implements OnLo
       return false;
     }
 
+    // Long pressing is an engagement, leave preview quality if any.
+    if (player.getPlayerView() instanceof ExoPlayerView) {
+      ((ExoPlayerView) player.getPlayerView()).setQuality(ExoPlayerView.QUALITY_FULL);
+    }
+
     ToroPlayer currentPlayer = manager.getPlayer();
     if (!player.equals(currentPlayer)) {
       // Being pressed player is a new one
@@ -66,7 +72,7 @@ public class LongClickableViewHelper extends ExoPlayerViewHelper implements OnLo
       // Trigger new player
       manager.setPlayer(player);
       if (!player.isPrepared()) {
-        player.preparePlayer(false);
+        preparePlayer(manager, player);
       } else {
         manager.restorePlaybackState(player.getMediaId());
         manager.startPlayback();
@@ -80,7 +86,7 @@ public class LongClickableViewHelper extends ExoPlayerViewHelper implements OnLo
       } else {
         // It's paused, so we resume it
         if (!currentPlayer.isPrepared()) {
-          currentPlayer.preparePlayer(false);
+          preparePlayer(manager, currentPlayer);
         } else {
           manager.restorePlaybackState(currentPlayer.getMediaId());
           manager.startPlayback();
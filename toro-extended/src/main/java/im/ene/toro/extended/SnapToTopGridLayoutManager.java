@@ -20,6 +20,7 @@ import android.content.Context;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import im.ene.toro.LandingPredictor;
 
 /**
  * Created by eneim on 10/23/16.
@@ -47,5 +48,7 @@ public class SnapToTopGridLayoutManager extends GridLayoutManager {
         new TopSnappedSmoothScroller(recyclerView.getContext());
     smoothScroller.setTargetPosition(position);
     startSmoothScroll(smoothScroller);
+    // We snap the target to the top, so it is where the list lands.
+    LandingPredictor.onSmoothScrollTo(recyclerView, position);
   }
 }
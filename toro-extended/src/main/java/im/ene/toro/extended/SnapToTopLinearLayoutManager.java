@@ -20,6 +20,7 @@ import android.content.Context;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import im.ene.toro.LandingPredictor;
 
 /**
  * Created by eneim on 10/7/16.
@@ -46,5 +47,7 @@ public class SnapToTopLinearLayoutManager extends LinearLayoutManager {
         new TopSnappedSmoothScroller(recyclerView.getContext());
     smoothScroller.setTargetPosition(position);
     startSmoothScroll(smoothScroller);
+    // We snap the target to the top, so it is where the list lands.
+    LandingPredictor.onSmoothScrollTo(recyclerView, position);
   }
 }
@@ -22,11 +22,9 @@ import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.widget.TextView;
 import com.google.android.exoplayer2.source.MediaSource;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
-import im.ene.toro.exoplayer2.ExoPlayerHelper;
 import im.ene.toro.exoplayer2.ExoPlayerView;
 import im.ene.toro.exoplayer2.ExoPlayerViewHolder;
+import im.ene.toro.exoplayer2.Media;
 import im.ene.toro.sample.R;
 import im.ene.toro.sample.data.OrderedVideoObject;
 
@@ -39,7 +37,7 @@ public class MediaItemViewHolder extends ExoPlayerViewHolder {
   public static final int LAYOUT_RES = R.layout.vh_toro_video_basic_4;
 
   private OrderedVideoObject videoItem;
-  private MediaSource mediaSource;
+  private Media media;
 
   private TextView number;
 
@@ -58,7 +56,11 @@ public class MediaItemViewHolder extends ExoPlayerViewHolder {
   }
 
   @Override protected MediaSource getMediaSource() {
-    return mediaSource;
+    return null;
+  }
+
+  @Nullable @Override protected Media getMedia() {
+    return media;
   }
 
   @Override protected void onBind(RecyclerView.Adapter adapter, @Nullable Object item) {
@@ -68,10 +70,8 @@ public class MediaItemViewHolder extends ExoPlayerViewHolder {
 
     this.videoItem = (OrderedVideoObject) item;
     this.number.setText("" + videoItem.position);
-    // prepare mediaSource
-    this.mediaSource = ExoPlayerHelper.buildMediaSource(itemView.getContext(), //
-        Uri.parse(this.videoItem.video), new DefaultDataSourceFactory(itemView.getContext(),
-            Util.getUserAgent(itemView.getContext(), "Toro-Sample")), itemView.getHandler(), null);
+    // Its MediaSource is reused by the player when this item is bound again
+    this.media = new Media(Uri.parse(this.videoItem.video));
   }
 
   @Nullable @Override public String getMediaId() {
@@ -17,6 +17,7 @@
 package im.ene.toro.sample.feature.basic4;
 
 import android.annotation.TargetApi;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
@@ -27,8 +28,11 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import im.ene.toro.Toro;
+import im.ene.toro.exoplayer2.Media;
+import im.ene.toro.exoplayer2.PrefetchScheduler;
 import im.ene.toro.sample.BaseToroFragment;
 import im.ene.toro.sample.R;
+import im.ene.toro.sample.data.SimpleVideoObject;
 
 /**
  * Created by eneim on 6/30/16.
@@ -37,6 +41,7 @@ public class Basic4ListFragment extends BaseToroFragment {
 
   protected RecyclerView recyclerView;
   protected RecyclerView.Adapter adapter;
+  private PrefetchScheduler prefetchScheduler;
 
   public static Basic4ListFragment newInstance() {
     return new Basic4ListFragment();
@@ -63,10 +68,22 @@ public class Basic4ListFragment extends BaseToroFragment {
     recyclerView.setAdapter(adapter);
 
     Toro.register(recyclerView);
+
+    // Download the beginning of upcoming videos while the list is at rest.
+    prefetchScheduler = new PrefetchScheduler(getContext(), new PrefetchScheduler.MediaProvider() {
+      @Nullable @Override public Media getMedia(int position) {
+        Object item = adapter instanceof Basic4Adapter ? ((Basic4Adapter) adapter).getItem(position)
+            : null;
+        return item instanceof SimpleVideoObject ? new Media(
+            Uri.parse(((SimpleVideoObject) item).video)) : null;
+      }
+    });
+    prefetchScheduler.attach(recyclerView);
   }
 
   @Override public void onDestroyView() {
     super.onDestroyView();
+    prefetchScheduler.detach(recyclerView);
     Toro.unregister(recyclerView);
   }
 
@@ -27,6 +27,7 @@ import im.ene.toro.exoplayer2.ExoPlayerHelper;
 import im.ene.toro.exoplayer2.ExoPlayerView;
 import im.ene.toro.exoplayer2.ExoPlayerViewHolder;
 import im.ene.toro.exoplayer2.ExoVideoView;
+import im.ene.toro.exoplayer2.Media;
 import im.ene.toro.sample.R;
 import im.ene.toro.sample.data.SimpleVideoObject;
 
@@ -71,6 +72,11 @@ public class Basic4VideoViewHolder extends ExoPlayerViewHolder {
     return mediaSource;
   }
 
+  // Read through the MediaCache, so the bytes prefetched by Basic4ListFragment are used.
+  @Nullable @Override protected Media getMedia() {
+    return this.videoItem != null ? new Media(Uri.parse(this.videoItem.video)) : null;
+  }
+
   @Nullable @Override public String getMediaId() {
     return this.videoItem != null ? this.videoItem.video + "@" + getAdapterPosition() : null;
   }
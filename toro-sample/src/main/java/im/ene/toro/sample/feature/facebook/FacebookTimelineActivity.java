@@ -32,11 +32,13 @@ import im.ene.toro.PlaybackState;
 import im.ene.toro.Toro;
 import im.ene.toro.ToroPlayer;
 import im.ene.toro.ToroStrategy;
+import im.ene.toro.exoplayer2.Media;
 import im.ene.toro.sample.BaseActivity;
 import im.ene.toro.sample.R;
 import im.ene.toro.sample.feature.facebook.playlist.FacebookPlaylistFragment;
 import im.ene.toro.sample.feature.facebook.timeline.TimelineAdapter;
 import im.ene.toro.sample.feature.facebook.timeline.TimelineItem;
+import im.ene.toro.sample.feature.facebook.timeline.VideoViewHolder;
 import im.ene.toro.sample.util.Util;
 import java.util.List;
 
@@ -117,6 +119,11 @@ public class FacebookTimelineActivity extends BaseActivity
               : state != null ? state.getPosition() : 0; // safe
         }
 
+        if (viewHolder instanceof VideoViewHolder) {
+          // Let the playlist continue with this engine, instead of preparing it again.
+          ((VideoViewHolder) viewHolder).handOff(item.getVideoUrl());
+        }
+
         FacebookPlaylistFragment playlistFragment =
             FacebookPlaylistFragment.newInstance(item, position, duration, order);
         playlistFragment.show(getSupportFragmentManager(),
@@ -155,9 +162,15 @@ public class FacebookTimelineActivity extends BaseActivity
   public void onPlaylistDetached(TimelineItem.VideoItem baseItem, Long position, int order) {
     Log.i(TAG,
         "onPlaylistDetached() called with: position = [" + position + "], order = [" + order + "]");
-    if (adapter.getPlayer() != null) {
-      adapter.savePlaybackState(Util.genVideoId(baseItem.getVideoUrl(), order), position,
-          adapter.getPlayer().getDuration());
+    // The player may have been handed off to the playlist, save the state anyway.
+    adapter.savePlaybackState(Util.genVideoId(baseItem.getVideoUrl(), order), position,
+        adapter.getPlayer() != null ? adapter.getPlayer().getDuration() : C.LENGTH_UNSET);
+
+    // Continue with the engine the playlist handed back, once this video is elected again.
+    RecyclerView.ViewHolder viewHolder = mRecyclerView.findViewHolderForAdapterPosition(order);
+    if (viewHolder instanceof VideoViewHolder) {
+      ((VideoViewHolder) viewHolder).takeOver(baseItem.getVideoUrl(),
+          new Media(Uri.parse(baseItem.getVideoUrl())));
     }
 
     if (isActive) {
@@ -81,6 +81,8 @@ public class FacebookPlaylistFragment extends DialogFragment {
   private long baseDuration;
   // Used to cache the base video's adapter position. Will be used in onDetach
   private int baseOrder;
+  // Position of the base video when its engine was handed back to the timeline, if it was.
+  private Long handedOffPosition;
 
   @NonNull @Override public Dialog onCreateDialog(Bundle savedInstanceState) {
     return new Dialog(getContext(), R.style.Toro_Theme_Playlist);
@@ -197,9 +199,28 @@ public class FacebookPlaylistFragment extends DialogFragment {
   }
 
   protected void dispatchFragmentDeActivated() {
+    if (isRemoving()) {
+      handOffBaseVideo();
+    }
     Toro.unregister(recyclerView);
   }
 
+  // Closing: let the timeline continue with the engine of the base video, instead of preparing it
+  // again. See FacebookTimelineActivity#onPlaylistDetached.
+  private void handOffBaseVideo() {
+    RecyclerView.ViewHolder viewHolder = recyclerView.findViewHolderForAdapterPosition(0);
+    if (!(viewHolder instanceof FirstItemViewHolder)) {
+      return;
+    }
+
+    FirstItemViewHolder firstItem = (FirstItemViewHolder) viewHolder;
+    // The player reports no position once its engine is gone.
+    long position = firstItem.getCurrentPosition();
+    if (firstItem.handOff(baseItem.getVideoUrl())) {
+      handedOffPosition = position;
+    }
+  }
+
   // Dialog cycle handling
 
   private static final String TAG = "Toro:FB:PLS";
@@ -223,7 +244,8 @@ public class FacebookPlaylistFragment extends DialogFragment {
       PlaybackState state = adapter.getPlaybackState(Util.genVideoId(baseItem.getVideoUrl(), 0));
       callback.onPlaylistDetached(this.baseItem,
           // Get saved position of first Item in this list, pass it to origin item at "baseOrder"
-          state != null ? state.getPosition() : 0, baseOrder);
+          handedOffPosition != null ? handedOffPosition : state != null ? state.getPosition() : 0,
+          baseOrder);
     }
     Log.w(TAG, "onDetach() called. Callback: " + callback + " , Host: " + getContext());
     super.onDetach();
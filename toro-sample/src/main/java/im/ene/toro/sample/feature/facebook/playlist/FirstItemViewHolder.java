@@ -22,6 +22,7 @@ import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import im.ene.toro.exoplayer2.ExoVideoView;
 import im.ene.toro.exoplayer2.ExoVideoViewHolder;
+import im.ene.toro.exoplayer2.Media;
 import im.ene.toro.sample.R;
 import im.ene.toro.sample.feature.facebook.timeline.TimelineItem;
 import im.ene.toro.sample.util.Util;
@@ -50,7 +51,10 @@ public class FirstItemViewHolder extends ExoVideoViewHolder {
       throw new IllegalArgumentException("Illegal object: " + object);
     }
     this.videoItem = (TimelineItem.VideoItem) object;
-    this.playerView.setMedia(Uri.parse(videoItem.getVideoUrl()));
+    Media media = new Media(Uri.parse(videoItem.getVideoUrl()));
+    // Continue with the engine handed off by the timeline, if any. See FacebookTimelineActivity.
+    takeOver(videoItem.getVideoUrl(), media);
+    this.playerView.setMedia(media);
   }
 
   @Nullable @Override public String getMediaId() {
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static android.os.Build.VERSION.SDK_INT;
+
+/**
+ * Decide how much autoplay the current network affords, from its connectivity, metering (and Data
+ * Saver) and the measured bandwidth of {@link BandwidthEstimator}:
+ *
+ * - {@link #MODE_FULL} on a fast unmetered network,
+ * - {@link #MODE_PREVIEW} on metered or slower networks: players autoplay at preview quality, with
+ * a small buffer, and nothing is prefetched on a very slow link,
+ * - {@link #MODE_OFF} when offline, or when Data Saver is on. Measured bandwidth alone never turns
+ * autoplay off: without playback there would be no new sample to turn it back on.
+ *
+ * The mode and prefetch depth are further capped by the {@link PowerGovernor}.
+ *
+ * Built-in {@link ToroStrategy}s don't allow any player to play in {@link #MODE_OFF}, custom ones
+ * can check {@link #getMode()} by themselves. Engine extensions pick their quality from the mode,
+ * and prefetchers how many items ahead they load from {@link #getPrefetchDepth()}.
+ *
+ * Must be used from main thread.
+ *
+ * @since 2.2.0
+ */
+public class AutoplayPolicy {
+
+  @IntDef({ MODE_OFF, MODE_PREVIEW, MODE_FULL }) @Retention(RetentionPolicy.SOURCE)
+  public @interface Mode {
+  }
+
+  /**
+   * Don't start playback automatically.
+   */
+  public static final int MODE_OFF = 0;
+  /**
+   * Autoplay at preview quality: lowest adequate rendition with a small buffer.
+   */
+  public static final int MODE_PREVIEW = 1;
+  /**
+   * Autoplay as usual.
+   */
+  public static final int MODE_FULL = 2;
+
+  // Measured bandwidth needed for full autoplay, in bits/sec.
+  public static final long DEFAULT_MIN_FULL_BITRATE = 2000000;
+  // Below this measured bandwidth, in bits/sec, nothing is prefetched.
+  public static final long DEFAULT_MIN_PREVIEW_BITRATE = 400000;
+  public static final int MAX_PREFETCH_DEPTH = 2;
+
+  /**
+   * Get notified when the mode changes because of a network, bandwidth or power change, on main
+   * thread.
+   */
+  public interface Listener {
+
+    void onAutoplayModeChanged(@Mode int mode);
+  }
+
+  private final ConnectivityManager connectivityManager;
+  private final BandwidthEstimator bandwidthEstimator;
+  private final PowerGovernor powerGovernor;
+  private final Context context;
+  private final Set<Listener> listeners = new LinkedHashSet<>();
+
+  @Mode private int maxMode = MODE_FULL;
+  @Mode private int maxMeteredMode = MODE_PREVIEW;
+  private long minFullBitrate = DEFAULT_MIN_FULL_BITRATE;
+  private long minPreviewBitrate = DEFAULT_MIN_PREVIEW_BITRATE;
+
+  // Network state, kept up to date by the receiver while there are listeners.
+  private BroadcastReceiver receiver;
+  private final PowerGovernor.Listener powerListener = new PowerGovernor.Listener() {
+    @Override public void onPowerLevelChanged(@PowerGovernor.Level int level) {
+      dispatchModeChanged();
+    }
+  };
+  private final BandwidthEstimator.Listener estimateListener = new BandwidthEstimator.Listener() {
+    @Override public void onBitrateEstimateChanged() {
+      dispatchModeChanged();
+    }
+  };
+  private boolean connected;
+  private boolean metered;
+  private boolean dataSaver;
+  @Mode private int lastMode;
+
+  public AutoplayPolicy(@NonNull Context context) {
+    this.context = context.getApplicationContext();
+    this.connectivityManager =
+        (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    this.bandwidthEstimator = BandwidthEstimator.with(this.context);
+    this.powerGovernor = PowerGovernor.with(this.context);
+  }
+
+  /**
+   * @return the autoplay mode the current network affords.
+   */
+  @Mode public int getMode() {
+    if (receiver == null) {
+      updateNetworkState();
+    }
+
+    int mode = computeMode(connected, metered, dataSaver, bandwidthEstimator.getBitrateEstimate(),
+        minFullBitrate);
+    mode = Math.min(Math.min(mode, maxMode), powerGovernor.getMaxAutoplayMode());
+    return metered ? Math.min(mode, maxMeteredMode) : mode;
+  }
+
+  /**
+   * @return how many items ahead of the playing one can be prepared or prefetched, from 0 to
+   * {@link #MAX_PREFETCH_DEPTH}.
+   */
+  public int getPrefetchDepth() {
+    int depth;
+    switch (getMode()) {
+      case MODE_FULL:
+        depth = metered ? 1 : MAX_PREFETCH_DEPTH;
+        break;
+      case MODE_PREVIEW:
+        long bitrate = bandwidthEstimator.getBitrateEstimate();
+        boolean slow = bitrate != BandwidthEstimator.NO_ESTIMATE && bitrate < minPreviewBitrate;
+        depth = metered || slow ? 0 : 1;
+        break;
+      default:
+        depth = 0;
+        break;
+    }
+    return Math.min(depth, powerGovernor.getMaxPrefetchDepth());
+  }
+
+  /**
+   * @return {@code true} if the current network is metered (e.g. cellular).
+   */
+  public boolean isMetered() {
+    if (receiver == null) {
+      updateNetworkState();
+    }
+    return metered;
+  }
+
+  /**
+   * Cap the mode on any network, e.g. from a "disable autoplay" user setting.
+   *
+   * @param maxMode the highest mode allowed.
+   */
+  public void setMaxMode(@Mode int maxMode) {
+    this.maxMode = maxMode;
+    dispatchModeChanged();
+  }
+
+  /**
+   * Cap the mode on metered networks, {@link #MODE_PREVIEW} by default. Use {@link #MODE_OFF} to
+   * autoplay on unmetered networks only.
+   *
+   * @param maxMeteredMode the highest mode allowed on metered networks.
+   */
+  public void setMaxMeteredMode(@Mode int maxMeteredMode) {
+    this.maxMeteredMode = maxMeteredMode;
+    dispatchModeChanged();
+  }
+
+  /**
+   * @param minFullBitrate measured bandwidth needed for {@link #MODE_FULL}, in bits/sec.
+   * @param minPreviewBitrate measured bandwidth needed to prefetch in {@link #MODE_PREVIEW}, in
+   * bits/sec.
+   */
+  public void setBitrateThresholds(long minFullBitrate, long minPreviewBitrate) {
+    if (minPreviewBitrate > minFullBitrate) {
+      throw new IllegalArgumentException(
+          "Preview threshold must not exceed full threshold: " + minPreviewBitrate);
+    }
+
+    this.minFullBitrate = minFullBitrate;
+    this.minPreviewBitrate = minPreviewBitrate;
+    dispatchModeChanged();
+  }
+
+  public void addListener(@NonNull Listener listener) {
+    if (listeners.add(listener) && receiver == null) {
+      updateNetworkState();
+      lastMode = getMode();
+      receiver = new BroadcastReceiver() {
+        @Override public void onReceive(Context context, Intent intent) {
+          updateNetworkState();
+          dispatchModeChanged();
+        }
+      };
+
+      IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+      if (SDK_INT >= Build.VERSION_CODES.N) {
+        filter.addAction(ConnectivityManager.ACTION_RESTRICT_BACKGROUND_CHANGED);
+      }
+      context.registerReceiver(receiver, filter);
+      powerGovernor.addListener(powerListener);
+      bandwidthEstimator.addListener(estimateListener);
+    }
+  }
+
+  public void removeListener(@NonNull Listener listener) {
+    if (listeners.remove(listener) && listeners.isEmpty() && receiver != null) {
+      context.unregisterReceiver(receiver);
+      powerGovernor.removeListener(powerListener);
+      bandwidthEstimator.removeListener(estimateListener);
+      receiver = null;
+    }
+  }
+
+  /**
+   * @return the mode the network affords, before the user and power caps.
+   */
+  @Mode static int computeMode(boolean connected, boolean metered, boolean dataSaver,
+      long bitrate, long minFullBitrate) {
+    if (!connected || (metered && dataSaver)) {
+      return MODE_OFF;
+    }
+
+    if (bitrate == BandwidthEstimator.NO_ESTIMATE) {
+      // Nothing measured on this network yet, be optimistic.
+      return MODE_FULL;
+    }
+
+    // Keep previews playing on a slow link, so the estimate is refreshed by new samples.
+    return bitrate >= minFullBitrate ? MODE_FULL : MODE_PREVIEW;
+  }
+
+  private void dispatchModeChanged() {
+    if (receiver == null) {
+      return;
+    }
+
+    int mode = getMode();
+    if (mode == lastMode) {
+      return;
+    }
+
+    lastMode = mode;
+    // Listeners may remove themselves while being notified.
+    for (Listener listener : new ArrayList<>(listeners)) {
+      listener.onAutoplayModeChanged(mode);
+    }
+  }
+
+  private void updateNetworkState() {
+    NetworkInfo info;
+    try {
+      info = connectivityManager.getActiveNetworkInfo();
+      metered = connectivityManager.isActiveNetworkMetered();
+    } catch (SecurityException e) {
+      // ACCESS_NETWORK_STATE removed by the app, assume a usable unmetered network.
+      connected = true;
+      metered = false;
+      dataSaver = false;
+      return;
+    }
+
+    connected = info != null && info.isConnected();
+    dataSaver = SDK_INT >= Build.VERSION_CODES.N && isDataSaverEnabled();
+  }
+
+  @TargetApi(Build.VERSION_CODES.N) private boolean isDataSaverEnabled() {
+    return connectivityManager.getRestrictBackgroundStatus()
+        == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED;
+  }
+}
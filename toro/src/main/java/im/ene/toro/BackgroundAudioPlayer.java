@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro;
+
+/**
+ * A {@link ToroPlayer} which can keep playing audio while its Activity is inactive, e.g. a podcast
+ * or a music video. Toro neither pauses nor releases such a player when its Activity stops, if it
+ * is playing and {@link #isBackgroundAudioEnabled()} says so. The player itself is responsible for
+ * dropping its video output meanwhile.
+ */
+public interface BackgroundAudioPlayer extends ToroPlayer {
+
+  /**
+   * @return {@code true} if this player keeps playing while its Activity is inactive.
+   */
+  boolean isBackgroundAudioEnabled();
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine independent bandwidth estimate, kept per network type (Wi-Fi, each mobile subtype, ...)
+ * and persisted across sessions. A fresh player's bandwidth meter has no estimate until its first
+ * transfers end, so adaptive track selection starts on a guess. The bandwidth meters of the engine
+ * extensions feed their samples here, and fall back to this estimate while they have none of
+ * their own.
+ *
+ * The estimate is an exponential moving average of the samples, so old sessions fade out as new
+ * samples come. Estimates older than {@link #MAX_AGE_MS} are ignored, low ones (below {@link
+ * #LOW_BITRATE}) after {@link #LOW_MAX_AGE_MS} already: a slow network is often only slow for a
+ * while, and a low estimate must not hold back playback for long.
+ *
+ * Thread safe: samples are added from main thread, estimates are read from playback threads.
+ *
+ * @since 2.2.0
+ */
+public final class BandwidthEstimator {
+
+  private static final String TAG = "ToroLib@Bandwidth";
+
+  /**
+   * Indicates no bandwidth estimate is available for the current network.
+   */
+  public static final long NO_ESTIMATE = -1;
+
+  /**
+   * Persisted estimates older than this are ignored.
+   */
+  public static final long MAX_AGE_MS = TimeUnit.DAYS.toMillis(3);
+
+  /**
+   * Estimates below this, in bits/sec, are ignored after {@link #LOW_MAX_AGE_MS}.
+   */
+  public static final long LOW_BITRATE = 1000000;
+  public static final long LOW_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(30);
+
+  /**
+   * Get notified when the estimate of the current network may have changed, on main thread.
+   */
+  public interface Listener {
+
+    void onBitrateEstimateChanged();
+  }
+
+  private static final String PREF_NAME = "toro_bandwidth";
+  private static final String UNKNOWN_NETWORK = "unknown";
+  // Weight of a new sample in the moving average.
+  private static final float SAMPLE_WEIGHT = 0.25f;
+  // Smaller transfers are dominated by latency, and would underestimate the bandwidth.
+  private static final long MIN_SAMPLE_BYTES = 32 * 1024;
+  private static final long MIN_WRITE_INTERVAL_MS = 10000;
+
+  private static volatile BandwidthEstimator sInstance;
+
+  public static BandwidthEstimator with(@NonNull Context context) {
+    if (sInstance == null) {
+      synchronized (BandwidthEstimator.class) {
+        if (sInstance == null) {
+          sInstance = new BandwidthEstimator(context.getApplicationContext());
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  private final SharedPreferences store;
+  private final ConnectivityManager connectivityManager;
+  // Estimates in bits/sec, per network key. Guarded by this.
+  private final Map<String, Long> estimates = new HashMap<>();
+  // Wall clock time each estimate was last updated at, per network key. Guarded by this.
+  private final Map<String, Long> updatedAt = new HashMap<>();
+  // Accessed from main thread only.
+  private final Set<Listener> listeners = new LinkedHashSet<>();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Runnable dispatchChange = new Runnable() {
+    @Override public void run() {
+      changePending = false;
+      // Listeners may remove themselves while being notified.
+      for (Listener listener : new ArrayList<>(listeners)) {
+        listener.onBitrateEstimateChanged();
+      }
+    }
+  };
+  private volatile boolean changePending;
+  private String networkKey;
+  private boolean dirty;
+  private long lastWriteAt;
+
+  private BandwidthEstimator(Context context) {
+    this.store = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    this.connectivityManager =
+        (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    this.networkKey = queryNetworkKey();
+    // Never unregistered, lives as long as the process.
+    context.registerReceiver(new BroadcastReceiver() {
+      @Override public void onReceive(Context context, Intent intent) {
+        onNetworkChanged();
+      }
+    }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+  }
+
+  /**
+   * @return the bandwidth estimate of the current network, in bits/sec, or {@link #NO_ESTIMATE}.
+   */
+  public synchronized long getBitrateEstimate() {
+    Long estimate = estimates.get(networkKey);
+    if (estimate == null) {
+      readEstimate(networkKey);
+      estimate = estimates.get(networkKey);
+    }
+
+    Long savedAt = updatedAt.get(networkKey);
+    if (estimate != NO_ESTIMATE && savedAt != null
+        && isExpired(estimate, savedAt, System.currentTimeMillis())) {
+      estimates.put(networkKey, NO_ESTIMATE);
+      updatedAt.remove(networkKey);
+      return NO_ESTIMATE;
+    }
+    return estimate;
+  }
+
+  public void addListener(@NonNull Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(@NonNull Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Add the sample of a finished transfer to the estimate of the current network.
+   *
+   * @param bytes number of bytes transferred.
+   * @param elapsedMs duration of the transfer, in millisecond.
+   */
+  public synchronized void addSample(long bytes, long elapsedMs) {
+    if (bytes < MIN_SAMPLE_BYTES || elapsedMs <= 0) {
+      return;
+    }
+
+    long bitrate = bytes * 8000 / elapsedMs;
+    long estimate = getBitrateEstimate();
+    estimate = estimate == NO_ESTIMATE ? bitrate
+        : (long) (estimate + SAMPLE_WEIGHT * (bitrate - estimate));
+    estimates.put(networkKey, estimate);
+    updatedAt.put(networkKey, System.currentTimeMillis());
+    dirty = true;
+    notifyChanged();
+
+    long now = SystemClock.elapsedRealtime();
+    if (now - lastWriteAt >= MIN_WRITE_INTERVAL_MS) {
+      flush();
+      lastWriteAt = now;
+    }
+  }
+
+  synchronized void onNetworkChanged() {
+    // Samples so far belong to the previous network.
+    flush();
+    networkKey = queryNetworkKey();
+    notifyChanged();
+  }
+
+  /**
+   * @param bitrate the estimate, in bits/sec.
+   * @param savedAt wall clock time the estimate was last updated at.
+   * @param now current wall clock time.
+   * @return {@code true} if the estimate is too old to be used.
+   */
+  static boolean isExpired(long bitrate, long savedAt, long now) {
+    long age = now - savedAt;
+    return age > MAX_AGE_MS || (bitrate < LOW_BITRATE && age > LOW_MAX_AGE_MS);
+  }
+
+  // Coalesce samples until listeners are notified.
+  private void notifyChanged() {
+    if (!changePending) {
+      changePending = true;
+      mainHandler.post(dispatchChange);
+    }
+  }
+
+  private void flush() {
+    if (!dirty) {
+      return;
+    }
+
+    dirty = false;
+    Long estimate = estimates.get(networkKey);
+    Long savedAt = updatedAt.get(networkKey);
+    if (estimate != null && estimate != NO_ESTIMATE && savedAt != null) {
+      store.edit().putString(networkKey, estimate + ":" + savedAt).apply();
+    }
+  }
+
+  // Load the persisted estimate of this network, if any, expired or not.
+  private void readEstimate(String key) {
+    estimates.put(key, NO_ESTIMATE);
+    String value = store.getString(key, null);
+    int separator = value != null ? value.indexOf(':') : -1;
+    if (separator < 0) {
+      return;
+    }
+
+    try {
+      long savedAt = Long.parseLong(value.substring(separator + 1));
+      estimates.put(key, Long.parseLong(value.substring(0, separator)));
+      updatedAt.put(key, savedAt);
+    } catch (NumberFormatException e) {
+      Log.w(TAG, "Malformed bandwidth estimate: " + key, e);
+    }
+  }
+
+  private String queryNetworkKey() {
+    NetworkInfo info;
+    try {
+      info = connectivityManager.getActiveNetworkInfo();
+    } catch (SecurityException e) {
+      // ACCESS_NETWORK_STATE removed by the app, share a single estimate.
+      return UNKNOWN_NETWORK;
+    }
+
+    if (info == null) {
+      return UNKNOWN_NETWORK;
+    }
+
+    return info.getType() == ConnectivityManager.TYPE_MOBILE ? "mobile:" + info.getSubtype()
+        : "type:" + info.getType();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.support.annotation.NonNull;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process wide memory budget shared by the buffers of all players. Each player's LoadControl
+ * reports its allocated bytes before loading more, and is held back once the total reaches the
+ * budget. The elected (playing) player has priority: it may keep loading until it uses the whole
+ * budget by itself, while the others must fit in what is left. A player is never held back below
+ * the buffer it needs to start playback, see {@link BufferProfile}.
+ *
+ * Thread safe, as LoadControls are called from playback threads.
+ *
+ * @since 2.2.0
+ */
+public final class BufferBudget {
+
+  public static final int MAX_DEFAULT_BYTES = 64 * 1024 * 1024;
+
+  private final long maxBytes;
+  private final Map<Object, Long> allocations = new HashMap<>();
+  private long totalBytes;
+
+  /**
+   * Create a budget of a quarter of the heap available to this process, capped at {@link
+   * #MAX_DEFAULT_BYTES}.
+   */
+  public BufferBudget() {
+    this(Math.min(Runtime.getRuntime().maxMemory() / 4, MAX_DEFAULT_BYTES));
+  }
+
+  /**
+   * @param maxBytes total bytes all players can buffer together.
+   */
+  public BufferBudget(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Budget must allow some bytes: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public synchronized long getAllocatedBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Report the bytes allocated by a player, and ask if it can load more.
+   *
+   * @param owner the LoadControl of the player.
+   * @param allocatedBytes bytes currently allocated by this player.
+   * @param priority {@code true} if this player is the elected one.
+   * @return {@code true} if the player can keep loading.
+   */
+  public synchronized boolean requestLoad(@NonNull Object owner, long allocatedBytes,
+      boolean priority) {
+    Long previous = allocations.put(owner, allocatedBytes);
+    totalBytes += allocatedBytes - (previous != null ? previous : 0);
+    return priority ? allocatedBytes < maxBytes : totalBytes < maxBytes;
+  }
+
+  /**
+   * Forget the allocations of a player, once it is stopped or released.
+   *
+   * @param owner the LoadControl of the player.
+   */
+  public synchronized void release(@NonNull Object owner) {
+    Long previous = allocations.remove(owner);
+    if (previous != null) {
+      totalBytes -= previous;
+    }
+  }
+}
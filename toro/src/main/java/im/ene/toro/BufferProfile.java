@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+/**
+ * Buffering targets of a player, applied by the LoadControl of both ExoPlayer extensions. A player
+ * starts (or resumes) playback once it has buffered {@link #bufferForPlaybackMs} (or {@link
+ * #bufferForPlaybackAfterRebufferMs}), keeps loading until {@link #maxBufferMs} and starts loading
+ * again once below {@link #minBufferMs}. {@link #maxBytes} caps the memory a single player can use
+ * on top of the process wide {@link BufferBudget}.
+ *
+ * @since 2.2.0
+ */
+public final class BufferProfile {
+
+  /**
+   * Short buffer for autoplay in a feed: starts fast and doesn't hold much data for Videos User
+   * may scroll away from.
+   */
+  public static final BufferProfile FEED_PREVIEW =
+      new BufferProfile(2500, 5000, 1000, 2000, 8 * 1024 * 1024);
+
+  /**
+   * Minimal buffer for players prepared ahead of time, just enough to start without delay.
+   */
+  public static final BufferProfile PREFETCH =
+      new BufferProfile(1000, 2000, 500, 1000, 2 * 1024 * 1024);
+
+  /**
+   * The engine default buffer, for Videos User engages with (e.g. in full screen).
+   */
+  public static final BufferProfile FULL_SCREEN = new BufferProfile(15000, 30000, 2500, 5000, 0);
+
+  public final int minBufferMs;
+  public final int maxBufferMs;
+  public final int bufferForPlaybackMs;
+  public final int bufferForPlaybackAfterRebufferMs;
+  // 0 means no cap
+  public final int maxBytes;
+
+  /**
+   * @param minBufferMs the player loads again once its buffer is below this duration.
+   * @param maxBufferMs the player stops loading once its buffer reaches this duration.
+   * @param bufferForPlaybackMs buffered duration required to start playback.
+   * @param bufferForPlaybackAfterRebufferMs buffered duration required to resume playback after
+   * running out of buffer.
+   * @param maxBytes memory cap of a single player, in bytes, 0 for the default cap of ExoPlayer.
+   */
+  public BufferProfile(int minBufferMs, int maxBufferMs, int bufferForPlaybackMs,
+      int bufferForPlaybackAfterRebufferMs, int maxBytes) {
+    if (minBufferMs < 0 || maxBufferMs < minBufferMs) {
+      throw new IllegalArgumentException(
+          "Invalid buffer durations: " + minBufferMs + ", " + maxBufferMs);
+    }
+
+    if (bufferForPlaybackMs < 0 || bufferForPlaybackAfterRebufferMs < 0 || maxBytes < 0) {
+      throw new IllegalArgumentException("Buffer targets must not be negative");
+    }
+
+    this.minBufferMs = minBufferMs;
+    this.maxBufferMs = maxBufferMs;
+    this.bufferForPlaybackMs = bufferForPlaybackMs;
+    this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+    this.maxBytes = maxBytes;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static android.os.Build.VERSION.SDK_INT;
+
+/**
+ * Limit the number of players holding video decoders at the same time. A player must get a lease
+ * from this budget before being prepared, and gives it back once released. If there is no lease
+ * left, the player waits (see {@link Listener}) instead of failing to initialize its decoder.
+ *
+ * By default, the budget is the number of concurrent instances supported by the first hardware
+ * AVC decoder of the device, queried once (API 23+), capped at {@link #MAX_DEFAULT_LEASES}.
+ */
+public final class DecoderBudget {
+
+  private static final String TAG = "ToroLib@Decoder";
+
+  /**
+   * Used when the device doesn't tell how many decoder instances it supports.
+   */
+  public static final int FALLBACK_LEASES = 2;
+  public static final int MAX_DEFAULT_LEASES = 3;
+
+  private static final String MIME_TYPE_AVC = "video/avc";
+
+  /**
+   * Get notified when a player starts or stops waiting for a decoder.
+   */
+  public interface Listener {
+
+    void onWaitingForDecoder(@NonNull ToroPlayer player, boolean waiting);
+  }
+
+  private int maxLeases;  // 0 means not yet queried
+  private int leaseCap = Integer.MAX_VALUE;
+  private final Set<ToroPlayer> holders = new LinkedHashSet<>();
+  private final Set<ToroPlayer> waiters = new LinkedHashSet<>();
+  @Nullable private Listener listener;
+
+  /**
+   * Create a budget using the device's decoder capabilities.
+   */
+  public DecoderBudget() {
+    this.maxLeases = 0;
+  }
+
+  /**
+   * @param maxLeases maximum number of players holding decoders at the same time.
+   */
+  public DecoderBudget(int maxLeases) {
+    if (maxLeases < 1) {
+      throw new IllegalArgumentException("Budget must allow at least one player: " + maxLeases);
+    }
+    this.maxLeases = maxLeases;
+  }
+
+  public void setListener(@Nullable Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * @return maximum number of players holding decoders at the same time, after the lease cap.
+   */
+  public int getMaxLeases() {
+    if (maxLeases == 0) {
+      maxLeases = queryMaxLeases();
+    }
+    return Math.min(maxLeases, leaseCap);
+  }
+
+  /**
+   * Temporarily lower the number of leases, e.g. to save power (see {@link PowerGovernor}).
+   * Current holders keep their lease, the cap applies to the next requests. Toro releases the
+   * surplus holders which are neither elected nor playing once the power level drops.
+   *
+   * @param leaseCap maximum number of leases, {@link Integer#MAX_VALUE} for no cap.
+   */
+  public void setLeaseCap(int leaseCap) {
+    if (leaseCap < 1) {
+      throw new IllegalArgumentException("Cap must allow at least one player: " + leaseCap);
+    }
+    this.leaseCap = leaseCap;
+  }
+
+  /**
+   * Ask for a lease. If there is no lease left, the player is marked as waiting.
+   *
+   * @param player the player going to be prepared.
+   * @return {@code true} if the player holds a lease, {@code false} if it must wait.
+   */
+  public boolean acquire(@NonNull ToroPlayer player) {
+    if (holders.contains(player)) {
+      return true;
+    }
+
+    if (holders.size() < getMaxLeases()) {
+      holders.add(player);
+      if (waiters.remove(player) && listener != null) {
+        listener.onWaitingForDecoder(player, false);
+      }
+      return true;
+    }
+
+    if (waiters.add(player) && listener != null) {
+      listener.onWaitingForDecoder(player, true);
+    }
+    return false;
+  }
+
+  /**
+   * Give back the lease of a released player, or stop waiting for one.
+   *
+   * @param player the released player.
+   * @return {@code true} if a lease was freed.
+   */
+  public boolean release(@NonNull ToroPlayer player) {
+    if (waiters.remove(player) && listener != null) {
+      listener.onWaitingForDecoder(player, false);
+    }
+    return holders.remove(player);
+  }
+
+  public boolean isHolding(@NonNull ToroPlayer player) {
+    return holders.contains(player);
+  }
+
+  public boolean isWaiting(@NonNull ToroPlayer player) {
+    return waiters.contains(player);
+  }
+
+  public boolean hasWaiters() {
+    return !waiters.isEmpty();
+  }
+
+  /**
+   * @return a copy of players waiting for a lease, oldest first.
+   */
+  @NonNull public List<ToroPlayer> getWaiters() {
+    return new ArrayList<>(waiters);
+  }
+
+  /**
+   * @return a copy of current lease holders, oldest first.
+   */
+  @NonNull public List<ToroPlayer> getHolders() {
+    return new ArrayList<>(holders);
+  }
+
+  private static int queryMaxLeases() {
+    int instances = SDK_INT >= Build.VERSION_CODES.M ? queryMaxSupportedInstances() : 0;
+    if (instances <= 0) {
+      return FALLBACK_LEASES;
+    }
+
+    return Math.max(1, Math.min(instances, MAX_DEFAULT_LEASES));
+  }
+
+  @TargetApi(Build.VERSION_CODES.M) private static int queryMaxSupportedInstances() {
+    try {
+      for (int i = 0; i < MediaCodecList.getCodecCount(); i++) {
+        MediaCodecInfo info = MediaCodecList.getCodecInfoAt(i);
+        // Software decoders are not the ones running out
+        if (info.isEncoder() || info.getName().startsWith("OMX.google.")) {
+          continue;
+        }
+
+        for (String type : info.getSupportedTypes()) {
+          if (MIME_TYPE_AVC.equalsIgnoreCase(type)) {
+            return info.getCapabilitiesForType(type).getMaxSupportedInstances();
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Failed to query decoder capabilities", e);
+    }
+
+    return 0;
+  }
+}
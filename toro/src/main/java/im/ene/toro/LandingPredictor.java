@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SnapHelper;
+import android.view.View;
+import android.widget.OverScroller;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Predict where a RecyclerView comes to rest after a fling or a smooth scroll, and prepare the
+ * player of that position while the list is still moving, as soon as its ViewHolder is laid out.
+ * Once the list stops, the election finds this player prepared already and starts it right away.
+ *
+ * The landing position comes from the {@link SnapHelper} attached to the RecyclerView if any,
+ * otherwise from the fling physics of RecyclerView and the average size of laid out items. Smooth
+ * scrollers knowing their target can tell it by {@link #onSmoothScrollTo(RecyclerView, int)}.
+ *
+ * The prediction is cancelled (and its player released) when User touches the list again, or if
+ * another player gets elected once the list is at rest. That check waits for the election itself
+ * (see {@link #onElectionDone(RecyclerView)}), which runs a frame or more after the scroll ends.
+ *
+ * Must be used from main thread. Attach it after the SnapHelper, if any. It is detached when the
+ * RecyclerView is unregistered from Toro.
+ *
+ * @since 2.2.0
+ */
+public final class LandingPredictor extends RecyclerView.OnFlingListener {
+
+  // Detached when their RecyclerView is unregistered from Toro.
+  private static final Map<RecyclerView, LandingPredictor> predictors = new HashMap<>();
+
+  /**
+   * Start predicting the landing position of flings and smooth scrolls of a RecyclerView.
+   *
+   * @param view the RecyclerView, registered to Toro.
+   * @return the predictor attached to this RecyclerView.
+   */
+  @NonNull public static LandingPredictor attach(@NonNull RecyclerView view) {
+    LandingPredictor predictor = predictors.get(view);
+    if (predictor == null) {
+      predictor = new LandingPredictor(view);
+      predictors.put(view, predictor);
+    }
+    return predictor;
+  }
+
+  public static void detach(@NonNull RecyclerView view) {
+    LandingPredictor predictor = predictors.remove(view);
+    if (predictor != null) {
+      predictor.release();
+    }
+  }
+
+  /**
+   * Tell the predictor of a RecyclerView, if any, where a smooth scroll is going to.
+   *
+   * @param view the RecyclerView.
+   * @param position the adapter position the smooth scroll snaps to.
+   */
+  public static void onSmoothScrollTo(@NonNull RecyclerView view, int position) {
+    LandingPredictor predictor = predictors.get(view);
+    if (predictor != null) {
+      predictor.predict(position);
+    }
+  }
+
+  /**
+   * Called by the election of a RecyclerView at rest, once it is done. A prediction the election
+   * didn't pick is released here, not before: the election runs on a later frame than the end of
+   * the scroll.
+   *
+   * @param view the RecyclerView.
+   */
+  static void onElectionDone(@NonNull RecyclerView view) {
+    LandingPredictor predictor = predictors.get(view);
+    if (predictor != null) {
+      PlayerManager manager = Toro.getManager(view);
+      ToroPlayer elected = manager != null ? manager.getPlayer() : null;
+      predictor.releaseUnelected(predictor.prediction.onElectionDone(elected));
+    }
+  }
+
+  /**
+   * State of a prediction, from the fling to the election of the list at rest. Tells which player
+   * to release, if any, at each step.
+   */
+  static final class Prediction {
+
+    int targetPosition = RecyclerView.NO_POSITION;
+    @Nullable ToroPlayer player;
+    // The list came to rest, the election decides if the prediction was right.
+    boolean settled;
+
+    /**
+     * @return the player of the previous target, if the target changed.
+     */
+    @Nullable ToroPlayer onTarget(int position) {
+      settled = false;
+      if (position == targetPosition) {
+        return null;
+      }
+
+      ToroPlayer released = cancel();
+      targetPosition = position;
+      return released;
+    }
+
+    void onPrepared(@NonNull ToroPlayer player) {
+      this.player = player;
+    }
+
+    void onSettled() {
+      targetPosition = RecyclerView.NO_POSITION;
+      settled = true;
+    }
+
+    /**
+     * @param elected the player elected after the list settled, may be {@code null}.
+     * @return the predicted player, if it was not elected.
+     */
+    @Nullable ToroPlayer onElectionDone(@Nullable ToroPlayer elected) {
+      if (!settled) {
+        // Still moving, or a new fling started meanwhile.
+        return null;
+      }
+
+      settled = false;
+      ToroPlayer predicted = cancel();
+      return predicted != elected ? predicted : null;
+    }
+
+    /**
+     * @return the predicted player, to release.
+     */
+    @Nullable ToroPlayer cancel() {
+      ToroPlayer predicted = player;
+      targetPosition = RecyclerView.NO_POSITION;
+      player = null;
+      return predicted;
+    }
+  }
+
+  private final RecyclerView view;
+  // The fling listener installed before, usually a SnapHelper.
+  @Nullable private final RecyclerView.OnFlingListener delegate;
+  private final OverScroller scroller;
+  private final Prediction prediction = new Prediction();
+
+  private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+    @Override public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+      if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+        // User interrupted the fling.
+        releaseUnelected(prediction.cancel());
+      } else if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+        // The election of the list at rest confirms or drops the prediction.
+        prediction.onSettled();
+      }
+    }
+
+    @Override public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+      prepareTarget();
+    }
+  };
+
+  private LandingPredictor(RecyclerView view) {
+    this.view = view;
+    this.delegate = view.getOnFlingListener();
+    this.scroller = new OverScroller(view.getContext());
+    view.setOnFlingListener(this);
+    view.addOnScrollListener(scrollListener);
+  }
+
+  @Override public boolean onFling(int velocityX, int velocityY) {
+    predict(findLandingPosition(velocityX, velocityY));
+    return delegate != null && delegate.onFling(velocityX, velocityY);
+  }
+
+  private void predict(int position) {
+    releaseUnelected(prediction.onTarget(position));
+    prepareTarget();
+  }
+
+  private void prepareTarget() {
+    if (prediction.targetPosition == RecyclerView.NO_POSITION
+        || Toro.getAutoplayPolicy().getMode() == AutoplayPolicy.MODE_OFF) {
+      return;
+    }
+
+    RecyclerView.ViewHolder holder =
+        view.findViewHolderForAdapterPosition(prediction.targetPosition);
+    PlayerManager manager = Toro.getManager(view);
+    if (!(holder instanceof ToroPlayer) || manager == null) {
+      return;
+    }
+
+    ToroPlayer player = (ToroPlayer) holder;
+    if (player == prediction.player || player.isPrepared() || !Toro.isAvailable(player)) {
+      return;
+    }
+
+    prediction.onPrepared(player);
+    Toro.preparePlayer(manager, player);
+  }
+
+  // Release a predicted player, unless it got elected or started meanwhile.
+  private void releaseUnelected(@Nullable ToroPlayer player) {
+    PlayerManager manager = Toro.getManager(view);
+    if (player != null && (manager == null || player != manager.getPlayer())
+        && !player.isPlaying()) {
+      Toro.releasePlayer(player);
+    }
+  }
+
+  private void release() {
+    releaseUnelected(prediction.cancel());
+    view.removeOnScrollListener(scrollListener);
+    if (view.getOnFlingListener() == this) {
+      view.setOnFlingListener(delegate);
+    }
+  }
+
+  private int findLandingPosition(int velocityX, int velocityY) {
+    RecyclerView.LayoutManager layoutManager = view.getLayoutManager();
+    RecyclerView.Adapter adapter = view.getAdapter();
+    if (layoutManager == null || adapter == null || adapter.getItemCount() == 0) {
+      return RecyclerView.NO_POSITION;
+    }
+
+    if (delegate instanceof SnapHelper) {
+      int position =
+          ((SnapHelper) delegate).findTargetSnapPosition(layoutManager, velocityX, velocityY);
+      if (position != RecyclerView.NO_POSITION) {
+        return position;
+      }
+    }
+
+    // Same physics as the fling of RecyclerView.
+    boolean vertical = layoutManager.canScrollVertically();
+    scroller.fling(0, 0, velocityX, velocityY, Integer.MIN_VALUE, Integer.MAX_VALUE,
+        Integer.MIN_VALUE, Integer.MAX_VALUE);
+    int distance = vertical ? scroller.getFinalY() : scroller.getFinalX();
+    scroller.abortAnimation();
+
+    // Laid out range, and the offset of its first item.
+    int first = Integer.MAX_VALUE;
+    int last = RecyclerView.NO_POSITION;
+    int firstStart = 0;
+    int start = Integer.MAX_VALUE;
+    int end = Integer.MIN_VALUE;
+    for (int i = 0; i < view.getChildCount(); i++) {
+      View child = view.getChildAt(i);
+      int position = view.getChildAdapterPosition(child);
+      if (position == RecyclerView.NO_POSITION) {
+        continue;
+      }
+
+      int childStart = vertical ? layoutManager.getDecoratedTop(child)
+          : layoutManager.getDecoratedLeft(child);
+      int childEnd = vertical ? layoutManager.getDecoratedBottom(child)
+          : layoutManager.getDecoratedRight(child);
+      if (position < first) {
+        first = position;
+        firstStart = childStart;
+      }
+      last = Math.max(last, position);
+      start = Math.min(start, childStart);
+      end = Math.max(end, childEnd);
+    }
+
+    if (last == RecyclerView.NO_POSITION || end <= start) {
+      return RecyclerView.NO_POSITION;
+    }
+
+    float itemSize = (float) (end - start) / (last - first + 1);
+    int viewportStart = vertical ? view.getPaddingTop() : view.getPaddingLeft();
+    return findLandingPosition(first, firstStart, itemSize, distance, viewportStart,
+        adapter.getItemCount());
+  }
+
+  /**
+   * @param first the first laid out position.
+   * @param firstStart offset of the first laid out item.
+   * @param itemSize average size of laid out items.
+   * @param distance fling distance.
+   * @param viewportStart offset of the start of the viewport (padding).
+   * @param itemCount number of items.
+   * @return the position nearest to the start of the viewport once the fling ends.
+   */
+  static int findLandingPosition(int first, int firstStart, float itemSize, int distance,
+      int viewportStart, int itemCount) {
+    int position = first + Math.round((distance + viewportStart - firstStart) / itemSize);
+    return Math.max(0, Math.min(position, itemCount - 1));
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Engine independent cache of parsed manifests (DASH, HLS, SmoothStreaming), keyed by uri and
+ * manifest type, so that preparing the same Media again doesn't download and parse its manifest
+ * again. Manifests are loaded and parsed on a background executor by a {@link Loader} provided by
+ * the engine extension, and concurrent requests of the same manifest share a single load.
+ *
+ * Each entry expires after the time to live given by its Loader: live manifests should use a short
+ * (or zero) TTL, as they are updated by the server.
+ *
+ * Thread safe: manifests can be looked up and cached from any thread. Callbacks are always
+ * delivered on main thread.
+ *
+ * @since 2.2.0
+ */
+public final class ManifestCache {
+
+  /**
+   * Time to live of manifests which never change.
+   */
+  public static final long TTL_FOREVER = Long.MAX_VALUE;
+
+  public static final int DEFAULT_MAX_ENTRIES = 32;
+  private static final int LOADER_THREADS = 2;
+
+  /**
+   * Download and parse a manifest. Called on a background thread.
+   *
+   * @param <T> type of the manifest.
+   */
+  public interface Loader<T> {
+
+    @NonNull T load(@NonNull Uri uri) throws IOException;
+
+    /**
+     * @param manifest the loaded manifest.
+     * @return how long the manifest can be used, in millisecond. 0 to not cache it.
+     */
+    long getTtlMs(@NonNull T manifest);
+  }
+
+  /**
+   * Callback of a manifest request, always called on main thread.
+   *
+   * @param <T> type of the manifest.
+   */
+  public interface Callback<T> {
+
+    void onManifestLoaded(@NonNull Uri uri, @NonNull T manifest);
+
+    void onManifestError(@NonNull Uri uri, @NonNull IOException error);
+  }
+
+  private static final class Entry {
+
+    final Object manifest;
+    final long expiresAt;
+
+    Entry(Object manifest, long expiresAt) {
+      this.manifest = manifest;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final Map<String, Entry> entries;
+  // Callbacks of in-flight loads, a null element is a request without callback.
+  private final Map<String, List<Callback<?>>> pending = new HashMap<>();
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final ExecutorService executor;
+
+  public ManifestCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param maxEntries maximum number of manifests kept in memory, least recently used ones are
+   * evicted first.
+   */
+  public ManifestCache(final int maxEntries) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Cache must allow at least one entry: " + maxEntries);
+    }
+
+    this.entries = new LinkedHashMap<String, Entry>(maxEntries, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+    this.executor = Executors.newFixedThreadPool(LOADER_THREADS, new ThreadFactory() {
+      @Override public Thread newThread(@NonNull Runnable runnable) {
+        Thread thread = new Thread(runnable, "Toro:Manifest");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @param uri the manifest uri.
+   * @param type the manifest type.
+   * @return the cached manifest if it is not expired, {@code null} otherwise.
+   */
+  @Nullable public synchronized <T> T get(@NonNull Uri uri, @NonNull Class<T> type) {
+    String key = toKey(uri, type);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+
+    if (SystemClock.elapsedRealtime() >= entry.expiresAt) {
+      entries.remove(key);
+      return null;
+    }
+
+    return type.cast(entry.manifest);
+  }
+
+  /**
+   * Cache a manifest loaded somewhere else, e.g. by the player itself.
+   *
+   * @param uri the manifest uri.
+   * @param type the manifest type.
+   * @param manifest the manifest.
+   * @param ttlMs how long the manifest can be used, in millisecond. 0 to not cache it.
+   */
+  public synchronized <T> void put(@NonNull Uri uri, @NonNull Class<T> type, @NonNull T manifest,
+      long ttlMs) {
+    if (ttlMs <= 0) {
+      return;
+    }
+
+    long now = SystemClock.elapsedRealtime();
+    long expiresAt = ttlMs >= TTL_FOREVER - now ? TTL_FOREVER : now + ttlMs;
+    entries.put(toKey(uri, type), new Entry(manifest, expiresAt));
+  }
+
+  /**
+   * @return {@code true} if a load of this manifest is in flight.
+   */
+  public synchronized boolean isLoading(@NonNull Uri uri, @NonNull Class<?> type) {
+    return pending.containsKey(toKey(uri, type));
+  }
+
+  /**
+   * Get a manifest from the cache, or load it in background. If the same manifest is being loaded
+   * already, this request waits for that load instead of starting a new one.
+   *
+   * @param uri the manifest uri.
+   * @param type the manifest type.
+   * @param loader used to load the manifest if needed.
+   * @param callback called once the manifest is available, may be {@code null} to only warm up
+   * the cache.
+   */
+  public <T> void load(@NonNull final Uri uri, @NonNull final Class<T> type,
+      @NonNull final Loader<T> loader, @Nullable final Callback<T> callback) {
+    final String key = toKey(uri, type);
+    final T cached;
+    synchronized (this) {
+      cached = get(uri, type);
+      if (cached == null) {
+        List<Callback<?>> callbacks = pending.get(key);
+        if (callbacks != null) {
+          // Already in flight
+          callbacks.add(callback);
+          return;
+        }
+
+        callbacks = new ArrayList<>();
+        callbacks.add(callback);
+        pending.put(key, callbacks);
+      }
+    }
+
+    if (cached != null) {
+      if (callback == null) {
+        return;
+      }
+
+      if (Looper.myLooper() == Looper.getMainLooper()) {
+        callback.onManifestLoaded(uri, cached);
+      } else {
+        handler.post(new Runnable() {
+          @Override public void run() {
+            callback.onManifestLoaded(uri, cached);
+          }
+        });
+      }
+      return;
+    }
+
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        T manifest = null;
+        long ttlMs = 0;
+        IOException error = null;
+        try {
+          manifest = loader.load(uri);
+          ttlMs = loader.getTtlMs(manifest);
+        } catch (IOException e) {
+          error = e;
+        } catch (RuntimeException e) {
+          error = new IOException(e);
+        }
+
+        final T result = manifest;
+        final long resultTtlMs = ttlMs;
+        final IOException resultError = error;
+        handler.post(new Runnable() {
+          @Override public void run() {
+            List<Callback<?>> callbacks;
+            synchronized (ManifestCache.this) {
+              callbacks = pending.remove(key);
+              if (result != null) {
+                put(uri, type, result, resultTtlMs);
+              }
+            }
+
+            if (callbacks == null) {
+              return;
+            }
+
+            for (Callback<?> item : callbacks) {
+              if (item == null) {
+                continue;
+              }
+
+              @SuppressWarnings("unchecked") Callback<T> callback = (Callback<T>) item;
+              if (result != null) {
+                callback.onManifestLoaded(uri, result);
+              } else {
+                //noinspection ConstantConditions
+                callback.onManifestError(uri, resultError);
+              }
+            }
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Cancel the delivery of a pending request. The manifest will still be cached once loaded.
+   *
+   * @param callback the callback passed to {@link #load(Uri, Class, Loader, Callback)}.
+   */
+  public synchronized void cancel(@NonNull Uri uri, @NonNull Class<?> type,
+      @NonNull Callback<?> callback) {
+    List<Callback<?>> callbacks = pending.get(toKey(uri, type));
+    if (callbacks != null) {
+      callbacks.remove(callback);
+    }
+  }
+
+  public synchronized void invalidate(@NonNull Uri uri, @NonNull Class<?> type) {
+    entries.remove(toKey(uri, type));
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private static String toKey(Uri uri, Class<?> type) {
+    return type.getName() + "@" + uri;
+  }
+}
@@ -28,43 +28,52 @@ final class MediaDataObserver extends RecyclerView.AdapterDataObserver implement
 
   @SuppressWarnings("unused") private static final String TAG = Toro.TAG + "@Observer";
   private PlayerManager manager;
+  // Schedules the elections of the View, items may have moved under the player.
+  private OnScrollListenerImpl scheduler;
 
-  MediaDataObserver(@NonNull PlayerManager manager) {
+  MediaDataObserver(@NonNull PlayerManager manager, @NonNull OnScrollListenerImpl scheduler) {
     this.manager = manager;
+    this.scheduler = scheduler;
   }
 
   @Override public void onChanged() {
     super.onChanged();
+    scheduler.requestElection();
     // placeholder: v3
     // TODO implement me
   }
 
   @Override public void onItemRangeChanged(int positionStart, int itemCount) {
     super.onItemRangeChanged(positionStart, itemCount);
+    scheduler.requestElection();
     // placeholder: v3
     // TODO implement me
   }
 
   @Override public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
     super.onItemRangeChanged(positionStart, itemCount, payload);
+    scheduler.requestElection();
     // placeholder: v3
     // TODO implement me
   }
 
   @Override public void onItemRangeInserted(int positionStart, int itemCount) {
     super.onItemRangeInserted(positionStart, itemCount);
+    scheduler.requestElection();
     // placeholder: v3
     // TODO implement me
   }
 
   @Override public void onItemRangeRemoved(int positionStart, int itemCount) {
     super.onItemRangeRemoved(positionStart, itemCount);
+    scheduler.requestElection();
     // placeholder: v3
     // TODO implement me
   }
 
   @Override public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
     super.onItemRangeMoved(fromPosition, toPosition, itemCount);
+    scheduler.requestElection();
     // placeholder: v3
     // TODO implement me
   }
@@ -75,5 +84,6 @@ final class MediaDataObserver extends RecyclerView.AdapterDataObserver implement
     }
 
     this.manager = null;
+    this.scheduler = null;
   }
 }
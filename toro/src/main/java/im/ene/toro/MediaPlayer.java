@@ -33,6 +33,16 @@ public interface MediaPlayer {
    */
   void preparePlayer(boolean playWhenReady);
 
+  /**
+   * Prepare the player to start from a specific position. Implementations should pass the position
+   * to the underlying engine before preparation, so that it buffers from there directly instead of
+   * buffering from the beginning and seeking afterwards.
+   *
+   * @param playWhenReady Immediately start playback when Ready.
+   * @param position the position (in millisecond) to start the playback from.
+   */
+  void preparePlayer(boolean playWhenReady, long position);
+
   /**
    * See {@link VideoView#start()}
    */
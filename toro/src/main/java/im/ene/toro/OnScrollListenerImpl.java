@@ -16,9 +16,12 @@
 
 package im.ene.toro;
 
+import android.support.annotation.NonNull;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.StaggeredGridLayoutManager;
+import android.view.Choreographer;
+import android.view.ViewTreeObserver;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -28,24 +31,95 @@ import java.util.List;
  *
  * Re-implementation of old ToroScrollListener.
  *
+ * Also the election scheduler of its RecyclerView: scroll, attach, data change and strategy change
+ * triggers only mark an election as pending (see {@link #requestElection()}), which runs once on
+ * the next frame, after the pending layout if any. So the election work per frame doesn't grow
+ * with the number of triggers, e.g. items attached during a fast scroll.
+ *
  * @hide
  * @since 2.2.0
  */
 final class OnScrollListenerImpl extends RecyclerView.OnScrollListener implements Removable {
 
   private final List<ToroPlayer> candidates;
+  private final RecyclerView view;
+  private boolean electionPending;
+  private boolean awaitingLayout;
+
+  private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+    @Override public void doFrame(long frameTimeNanos) {
+      if (view.isLayoutRequested()) {
+        // Items are not where they will be, elect once they are laid out.
+        awaitingLayout = true;
+      } else {
+        runElection();
+      }
+    }
+  };
+
+  private final ViewTreeObserver.OnGlobalLayoutListener layoutListener =
+      new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override public void onGlobalLayout() {
+          if (awaitingLayout) {
+            runElection();
+          }
+        }
+      };
 
-  OnScrollListenerImpl() {
+  OnScrollListenerImpl(@NonNull RecyclerView view) {
     this.candidates = new ArrayList<>();
+    this.view = view;
+    view.getViewTreeObserver().addOnGlobalLayoutListener(layoutListener);
   }
 
   private PlayerManager playerManager;
 
   @Override public void onScrollStateChanged(RecyclerView parent, int newState) {
-    if (newState != RecyclerView.SCROLL_STATE_IDLE) {
-      return;
+    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+      requestElection();
+    }
+  }
+
+  /**
+   * Run the election on the next frame if the list is at rest, otherwise once it comes to rest.
+   * Unlike {@link #requestElection()}, this doesn't run a scrolling election, which would skip a
+   * list that has a player already.
+   */
+  void requestElectionWhenIdle() {
+    if (view.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+      requestElection();
     }
+    // Otherwise the idle state runs it, see onScrollStateChanged.
+  }
+
+  /**
+   * Run the election on the next frame, unless one is pending already.
+   */
+  void requestElection() {
+    if (!electionPending) {
+      electionPending = true;
+      Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+  }
+
+  private void runElection() {
+    electionPending = false;
+    awaitingLayout = false;
+    // While scrolling, only elect a player if there is none. Otherwise the next idle state
+    // triggers a new election.
+    PlayerManager manager = Toro.getManager(view);
+    boolean idle = view.getScrollState() == RecyclerView.SCROLL_STATE_IDLE;
+    if (idle || (manager != null && manager.getPlayer() == null)) {
+      elect(view);
+    }
+
+    if (idle) {
+      // Now that the list is at rest and elected, a wrong landing prediction can be dropped.
+      LandingPredictor.onElectionDone(view);
+    }
+  }
 
+  private void elect(RecyclerView parent) {
     playerManager = Toro.getManager(parent);
     if (playerManager == null) {
       return;
@@ -56,7 +130,8 @@ final class OnScrollListenerImpl extends RecyclerView.OnScrollListener implement
     // Check current playing position
     final ToroPlayer currentPlayer = playerManager.getPlayer();
     if (currentPlayer != null && currentPlayer.getPlayOrder() != RecyclerView.NO_POSITION) {
-      if (currentPlayer.wantsToPlay() && Toro.getStrategy().allowsToPlay(currentPlayer, parent)) {
+      if (currentPlayer.wantsToPlay() && Toro.isAvailable(currentPlayer) && //
+          Toro.getStrategy().allowsToPlay(currentPlayer, parent)) {
         candidates.add(currentPlayer);
       }
     }
@@ -97,7 +172,8 @@ final class OnScrollListenerImpl extends RecyclerView.OnScrollListener implement
         if (viewHolder != null && viewHolder instanceof ToroPlayer) {
           ToroPlayer candidate = (ToroPlayer) viewHolder;
           // check candidate's condition
-          if (candidate.wantsToPlay() && Toro.getStrategy().allowsToPlay(candidate, parent)) {
+          if (candidate.wantsToPlay() && Toro.isAvailable(candidate) && //
+              Toro.getStrategy().allowsToPlay(candidate, parent)) {
             // Have a new candidate who can play
             if (!candidates.contains(candidate)) {
               candidates.add(candidate);
@@ -115,7 +191,7 @@ final class OnScrollListenerImpl extends RecyclerView.OnScrollListener implement
       if (currentPlayer != null) {
         if (!currentPlayer.isPrepared()) {
           // We catch the state of prepared and trigger it manually
-          currentPlayer.preparePlayer(false);
+          Toro.preparePlayer(playerManager, currentPlayer);
         } else if (!currentPlayer.isPlaying()) {  // player is prepared and ready to play
           playerManager.restorePlaybackState(currentPlayer.getMediaId());
           playerManager.startPlayback();
@@ -140,7 +216,7 @@ final class OnScrollListenerImpl extends RecyclerView.OnScrollListener implement
     // Well... let's the BlackHouse starts new cycle with the new President!
     playerManager.setPlayer(electedPlayer);
     if (!electedPlayer.isPrepared()) {
-      electedPlayer.preparePlayer(false);
+      Toro.preparePlayer(playerManager, electedPlayer);
     } else {
       playerManager.restorePlaybackState(electedPlayer.getMediaId());
       playerManager.startPlayback();
@@ -148,6 +224,10 @@ final class OnScrollListenerImpl extends RecyclerView.OnScrollListener implement
   }
 
   @Override public void remove() throws Exception {
+    Choreographer.getInstance().removeFrameCallback(frameCallback);
+    view.getViewTreeObserver().removeOnGlobalLayoutListener(layoutListener);
+    electionPending = false;
+    awaitingLayout = false;
     playerManager = null;
     candidates.clear();
   }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.media.MediaCodec;
+import android.media.MediaDrmException;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
+import android.support.annotation.Nullable;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static android.os.Build.VERSION.SDK_INT;
+
+/**
+ * Keeps track of playback errors per Media, so that a failing Media is not prepared again on every
+ * election. Transient errors (network, unknown) are retried with exponential backoff, until they
+ * fail too many times in a row. Decoder and DRM errors are not retried. In both cases the Media is
+ * excluded from candidacy for a cooldown period (the circuit is "open"), after which it is given
+ * another chance.
+ *
+ * @since 2.2.0
+ */
+public final class PlaybackErrorPolicy {
+
+  @IntDef({ ERROR_TYPE_UNKNOWN, ERROR_TYPE_NETWORK, ERROR_TYPE_DECODER, ERROR_TYPE_DRM })
+  @Retention(RetentionPolicy.SOURCE) public @interface ErrorType {
+  }
+
+  public static final int ERROR_TYPE_UNKNOWN = 0;
+  public static final int ERROR_TYPE_NETWORK = 1;
+  public static final int ERROR_TYPE_DECODER = 2;
+  public static final int ERROR_TYPE_DRM = 3;
+
+  /**
+   * Returned by {@link #onPlaybackError(String, int)} when the Media should not be retried.
+   */
+  public static final long NO_RETRY = -1;
+
+  public static final long DEFAULT_BASE_BACKOFF_MS = 1000;
+  public static final long DEFAULT_MAX_BACKOFF_MS = 16000;
+  public static final int DEFAULT_MAX_RETRY_COUNT = 3;
+  public static final long DEFAULT_COOLDOWN_MS = 60000;
+
+  // Keep records of recently failed Media only.
+  private static final int MAX_RECORD_COUNT = 64;
+
+  private static final class Record {
+
+    int failureCount;
+    long availableAt;
+  }
+
+  private final long baseBackoffMs;
+  private final long maxBackoffMs;
+  private final int maxRetryCount;
+  private final long cooldownMs;
+
+  private final Map<String, Record> records = new LinkedHashMap<String, Record>() {
+    @Override protected boolean removeEldestEntry(Entry<String, Record> eldest) {
+      return size() > MAX_RECORD_COUNT;
+    }
+  };
+
+  public PlaybackErrorPolicy() {
+    this(DEFAULT_BASE_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS, DEFAULT_MAX_RETRY_COUNT,
+        DEFAULT_COOLDOWN_MS);
+  }
+
+  /**
+   * @param baseBackoffMs delay before the first retry of a transient error.
+   * @param maxBackoffMs upper bound of the delay between two retries.
+   * @param maxRetryCount number of consecutive transient errors before the circuit is opened.
+   * @param cooldownMs time a Media is excluded from candidacy once its circuit is opened.
+   */
+  public PlaybackErrorPolicy(long baseBackoffMs, long maxBackoffMs, int maxRetryCount,
+      long cooldownMs) {
+    this.baseBackoffMs = baseBackoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+    this.maxRetryCount = maxRetryCount;
+    this.cooldownMs = cooldownMs;
+  }
+
+  /**
+   * Record a playback error of a Media.
+   *
+   * @param mediaId the Media's id, see {@link ToroPlayer#getMediaId()}.
+   * @param errorType type of the error.
+   * @return delay in milliseconds before the Media should be retried, or {@link #NO_RETRY}.
+   */
+  public long onPlaybackError(@Nullable String mediaId, @ErrorType int errorType) {
+    if (mediaId == null) {
+      return NO_RETRY;
+    }
+
+    Record record = records.get(mediaId);
+    if (record == null) {
+      record = new Record();
+      records.put(mediaId, record);
+    }
+
+    record.failureCount++;
+    long now = SystemClock.elapsedRealtime();
+    boolean retryable = errorType == ERROR_TYPE_NETWORK || errorType == ERROR_TYPE_UNKNOWN;
+    if (!retryable || record.failureCount > maxRetryCount) {
+      // Open the circuit
+      record.availableAt = now + cooldownMs;
+      return NO_RETRY;
+    }
+
+    long backoff = Math.min(maxBackoffMs, baseBackoffMs << (record.failureCount - 1));
+    record.availableAt = now + backoff;
+    return backoff;
+  }
+
+  /**
+   * Clear the error record of a Media, called once it is successfully prepared.
+   *
+   * @param mediaId the Media's id, see {@link ToroPlayer#getMediaId()}.
+   */
+  public void onPlaybackSuccess(@Nullable String mediaId) {
+    if (mediaId != null) {
+      records.remove(mediaId);
+    }
+  }
+
+  /**
+   * @param mediaId the Media's id, see {@link ToroPlayer#getMediaId()}.
+   * @return {@code true} if the Media can be prepared now, {@code false} if it is waiting for a
+   * retry or its circuit is open.
+   */
+  public boolean isAvailable(@Nullable String mediaId) {
+    if (mediaId == null) {
+      return true;
+    }
+
+    Record record = records.get(mediaId);
+    return record == null || SystemClock.elapsedRealtime() >= record.availableAt;
+  }
+
+  public void reset() {
+    records.clear();
+  }
+
+  /**
+   * Engine-independent classification of a playback error, based on its cause chain. Extensions
+   * should refine this using their own exception types.
+   *
+   * @param error the error to classify.
+   * @return type of the error.
+   */
+  @ErrorType public static int classify(@Nullable Throwable error) {
+    Throwable cause = error;
+    while (cause != null) {
+      if (cause instanceof MediaCodec.CryptoException) {
+        return ERROR_TYPE_DRM;
+      }
+
+      if (SDK_INT >= 18 && cause instanceof MediaDrmException) {
+        return ERROR_TYPE_DRM;
+      }
+
+      if (SDK_INT >= 21 && cause instanceof MediaCodec.CodecException) {
+        return ERROR_TYPE_DECODER;
+      }
+
+      if (cause instanceof IOException) {
+        return ERROR_TYPE_NETWORK;
+      }
+
+      cause = cause.getCause();
+    }
+
+    return ERROR_TYPE_UNKNOWN;
+  }
+}
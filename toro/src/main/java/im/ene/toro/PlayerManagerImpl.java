@@ -27,6 +27,12 @@ import java.util.Map;
  */
 final class PlayerManagerImpl implements PlayerManager {
 
+  /**
+   * A player which is already this close to the saved position is not seeked again. A player
+   * prepared at a position reports the nearest sync sample, not the exact position.
+   */
+  static final long SEEK_TOLERANCE_MS = 1000;
+
   private final Map<String, PlaybackState> playbackStates = new LinkedHashMap<>();
 
   private ToroPlayer player;
@@ -81,13 +87,22 @@ final class PlayerManagerImpl implements PlayerManager {
       return;
     }
 
-    player.seekTo(getSavedPosition(videoId));
+    long position = getSavedPosition(videoId);
+    // Player may have been prepared at this position already, seeking again would drop its buffer.
+    if (shouldSeek(player.getCurrentPosition(), position)) {
+      player.seekTo(position);
+    }
+  }
+
+  static boolean shouldSeek(long currentPosition, long savedPosition) {
+    // A negative position is unknown, C.TIME_UNSET for example.
+    return currentPosition < 0 || Math.abs(currentPosition - savedPosition) > SEEK_TOLERANCE_MS;
   }
 
   private long getSavedPosition(String videoId) {
     PlaybackState savedState = playbackStates.get(videoId);
     long position = 0;
-    if (savedState != null) {
+    if (savedState != null && savedState.getPosition() != null) {
       position = savedState.getPosition();
     }
     return position;
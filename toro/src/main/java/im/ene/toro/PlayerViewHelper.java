@@ -22,7 +22,6 @@ import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.view.ViewParent;
-import android.view.ViewTreeObserver;
 
 /**
  * Created by eneim on 2/1/16.
@@ -54,28 +53,15 @@ public abstract class PlayerViewHelper {
 
     if (manager.getPlayer() == player) {
       if (!player.isPrepared()) {
-        player.preparePlayer(false);
+        Toro.preparePlayer(manager, player);
       } else {
         manager.restorePlaybackState(player.getMediaId());
         manager.startPlayback();
       }
     } else if (manager.getPlayer() == null) {
-      itemView.getViewTreeObserver().addOnGlobalLayoutListener( //
-          new ViewTreeObserver.OnGlobalLayoutListener() {
-            @Override public void onGlobalLayout() {
-              itemView.getViewTreeObserver().removeOnGlobalLayoutListener(this);
-              if (player.wantsToPlay() && Toro.getStrategy()
-                  .allowsToPlay(player, itemView.getParent())) {
-                manager.setPlayer(player);
-                if (!player.isPrepared()) {
-                  player.preparePlayer(false);
-                } else {
-                  manager.restorePlaybackState(player.getMediaId());
-                  manager.startPlayback();
-                }
-              }
-            }
-          });
+      // This player may be the one to elect, once laid out. Items attached during the same frame
+      // share a single election.
+      Toro.requestElection(itemView.getParent());
     }
   }
 
@@ -91,6 +77,17 @@ public abstract class PlayerViewHelper {
   }
 
   @CallSuper public void onRecycled() {
+    onRecycled(true);
+  }
+
+  /**
+   * Same as {@link #onRecycled()}, but lets a player keep its engine across recycling, e.g. to
+   * continue with it once rebound to the same Media. Such player gives back its decoder once it
+   * releases the engine by itself, see {@link #onPlayerReleased()}.
+   *
+   * @param releasePlayer {@code false} to keep the engine of the player.
+   */
+  @CallSuper public void onRecycled(boolean releasePlayer) {
     PlayerManager manager = getPlayerManager(itemView.getParent());
     // Manually save Video state
     if (manager != null && player == manager.getPlayer()) {
@@ -102,8 +99,33 @@ public abstract class PlayerViewHelper {
       // Detach current Player
       manager.setPlayer(null);
     }
-    // Release player.
-    player.releasePlayer();
+    if (releasePlayer) {
+      // Release player, and its decoder.
+      Toro.releasePlayer(player);
+    }
+  }
+
+  /**
+   * Called before the player's engine is handed off to another View, while it is still here.
+   */
+  @CallSuper public void onHandOff() {
+    Toro.sInstance.onPlayerHandedOff(player, itemView.getParent());
+  }
+
+  /**
+   * Called after the player took over an engine handed off by another View. Such engine is already
+   * prepared, so this replaces {@link #onPrepared(View, ViewParent)}.
+   */
+  @CallSuper public void onTakenOver() {
+    Toro.sInstance.onPlayerTakenOver(player, itemView.getParent());
+  }
+
+  /**
+   * Called once the player's engine was released, including when its View did so by itself (e.g.
+   * on detach or on completion) without going through Toro.
+   */
+  @CallSuper public void onPlayerReleased() {
+    Toro.sInstance.onPlayerReleased(player);
   }
 
   /* BEGIN: Callback for MediaPlayer */
@@ -120,6 +142,16 @@ public abstract class PlayerViewHelper {
     return Toro.getManager(parent);
   }
 
+  /**
+   * Prepare {@code target} at the playback position saved in {@code manager}.
+   *
+   * @param manager the PlayerManager which holds the saved playback state.
+   * @param target the player to prepare.
+   */
+  protected final void preparePlayer(@NonNull PlayerManager manager, @NonNull ToroPlayer target) {
+    Toro.preparePlayer(manager, target);
+  }
+
   /**
    * Complete the playback
    */
@@ -129,6 +161,17 @@ public abstract class PlayerViewHelper {
 
   protected final boolean onPlaybackError(Exception error) {
     return this.player.onPlaybackError(error) &&  //
-        Toro.sInstance.onPlaybackError(this.player, error);
+        Toro.sInstance.onPlaybackError(this.player, error, getErrorType(error));
+  }
+
+  /**
+   * Classify a playback error, so that Toro can decide to retry it or not. Engine specific helpers
+   * should override this to recognize their own exceptions.
+   *
+   * @param error the playback error.
+   * @return type of the error, see {@link PlaybackErrorPolicy}.
+   */
+  @PlaybackErrorPolicy.ErrorType protected int getErrorType(Exception error) {
+    return PlaybackErrorPolicy.classify(error);
   }
 }
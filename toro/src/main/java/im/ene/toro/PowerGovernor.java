@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static android.os.Build.VERSION.SDK_INT;
+
+/**
+ * Degrade playback progressively as the device runs low on battery or heats up, from battery
+ * level, charging state, power save mode and battery temperature:
+ *
+ * - {@link #LEVEL_LIGHT}: fewer prepared players, prefetch one item ahead at most.
+ * - {@link #LEVEL_MODERATE}: a single prepared player, no prefetch, preview quality autoplay.
+ * - {@link #LEVEL_SEVERE}: no autoplay at all.
+ *
+ * The caps are applied through {@link AutoplayPolicy} (autoplay mode, thus quality, and prefetch
+ * depth) and {@link DecoderBudget} (prepared players).
+ *
+ * Must be used from main thread.
+ *
+ * @since 2.2.0
+ */
+public final class PowerGovernor {
+
+  @IntDef({ LEVEL_NONE, LEVEL_LIGHT, LEVEL_MODERATE, LEVEL_SEVERE })
+  @Retention(RetentionPolicy.SOURCE) public @interface Level {
+  }
+
+  public static final int LEVEL_NONE = 0;
+  public static final int LEVEL_LIGHT = 1;
+  public static final int LEVEL_MODERATE = 2;
+  public static final int LEVEL_SEVERE = 3;
+
+  // Battery percentages, while discharging.
+  static final int LIGHT_BATTERY_LEVEL = 30;
+  static final int MODERATE_BATTERY_LEVEL = 15;
+  static final int SEVERE_BATTERY_LEVEL = 5;
+  // Battery temperatures, in tenths of degree Celsius.
+  static final int MODERATE_TEMPERATURE = 420;
+  static final int SEVERE_TEMPERATURE = 450;
+
+  /**
+   * Get notified when the degradation level changes, on main thread.
+   */
+  public interface Listener {
+
+    void onPowerLevelChanged(@Level int level);
+  }
+
+  private static volatile PowerGovernor sInstance;
+
+  public static PowerGovernor with(@NonNull Context context) {
+    if (sInstance == null) {
+      synchronized (PowerGovernor.class) {
+        if (sInstance == null) {
+          sInstance = new PowerGovernor(context.getApplicationContext());
+        }
+      }
+    }
+
+    return sInstance;
+  }
+
+  private final PowerManager powerManager;
+  private final Set<Listener> listeners = new LinkedHashSet<>();
+  private int batteryPercent = 100;
+  private int temperature;
+  private boolean charging = true;
+  @Level private int level = LEVEL_NONE;
+
+  private PowerGovernor(Context context) {
+    this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    BroadcastReceiver receiver = new BroadcastReceiver() {
+      @Override public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+          updateBatteryState(intent);
+        }
+        updateLevel();
+      }
+    };
+
+    IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+    if (SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+    }
+    // Never unregistered, lives as long as the process. Battery state is sticky.
+    Intent battery = context.registerReceiver(receiver, filter);
+    if (battery != null) {
+      updateBatteryState(battery);
+    }
+    this.level = computeLevel();
+  }
+
+  /**
+   * @return the degradation level currently active.
+   */
+  @Level public int getLevel() {
+    return level;
+  }
+
+  /**
+   * @return the highest {@link AutoplayPolicy.Mode} allowed at the current level.
+   */
+  @AutoplayPolicy.Mode public int getMaxAutoplayMode() {
+    switch (level) {
+      case LEVEL_SEVERE:
+        return AutoplayPolicy.MODE_OFF;
+      case LEVEL_MODERATE:
+        return AutoplayPolicy.MODE_PREVIEW;
+      default:
+        return AutoplayPolicy.MODE_FULL;
+    }
+  }
+
+  /**
+   * @return how many items ahead can be prefetched at the current level.
+   */
+  public int getMaxPrefetchDepth() {
+    switch (level) {
+      case LEVEL_NONE:
+        return AutoplayPolicy.MAX_PREFETCH_DEPTH;
+      case LEVEL_LIGHT:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * @return how many players can be prepared at the same time at the current level, see {@link
+   * DecoderBudget#setLeaseCap(int)}.
+   */
+  public int getMaxActivePlayers() {
+    switch (level) {
+      case LEVEL_NONE:
+        return Integer.MAX_VALUE;
+      case LEVEL_LIGHT:
+        return 2;
+      default:
+        return 1;
+    }
+  }
+
+  public void addListener(@NonNull Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(@NonNull Listener listener) {
+    listeners.remove(listener);
+  }
+
+  private void updateBatteryState(Intent battery) {
+    int batteryLevel = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+    int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+    if (batteryLevel >= 0 && scale > 0) {
+      batteryPercent = batteryLevel * 100 / scale;
+    }
+
+    temperature = battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+    int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+    charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+        || status == BatteryManager.BATTERY_STATUS_FULL;
+  }
+
+  private void updateLevel() {
+    int newLevel = computeLevel();
+    if (newLevel == level) {
+      return;
+    }
+
+    level = newLevel;
+    // Listeners may remove themselves while being notified.
+    for (Listener listener : new ArrayList<>(listeners)) {
+      listener.onPowerLevelChanged(newLevel);
+    }
+  }
+
+  @Level private int computeLevel() {
+    if (temperature >= SEVERE_TEMPERATURE
+        || (!charging && batteryPercent <= SEVERE_BATTERY_LEVEL)) {
+      return LEVEL_SEVERE;
+    }
+
+    if (temperature >= MODERATE_TEMPERATURE || isPowerSaveMode()
+        || (!charging && batteryPercent <= MODERATE_BATTERY_LEVEL)) {
+      return LEVEL_MODERATE;
+    }
+
+    return !charging && batteryPercent <= LIGHT_BATTERY_LEVEL ? LEVEL_LIGHT : LEVEL_NONE;
+  }
+
+  private boolean isPowerSaveMode() {
+    return SDK_INT >= Build.VERSION_CODES.LOLLIPOP && isPowerSaveModeV21();
+  }
+
+  @TargetApi(Build.VERSION_CODES.LOLLIPOP) private boolean isPowerSaveModeV21() {
+    return powerManager.isPowerSaveMode();
+  }
+}
@@ -22,6 +22,8 @@ import android.app.Application;
 import android.graphics.Rect;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
@@ -83,6 +85,34 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
   // Default strategy
   private ToroStrategy mStrategy = Strategies.MOST_VISIBLE_TOP_DOWN;
 
+  // Keep failing Media out of the election for a while
+  private PlaybackErrorPolicy errorPolicy = new PlaybackErrorPolicy();
+  // Used to schedule retries of failed playback
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  // Limit the number of prepared players holding decoders
+  private DecoderBudget decoderBudget = new DecoderBudget();
+  // Share parsed manifests between players of both engines
+  private ManifestCache manifestCache = new ManifestCache();
+  // Memory shared by the buffers of all players
+  private BufferBudget bufferBudget = new BufferBudget();
+  // How much autoplay the current network affords, created with the Application
+  private AutoplayPolicy autoplayPolicy;
+  // Lowers the number of prepared players as the device runs low on battery or heats up
+  private PowerGovernor powerGovernor;
+  private final PowerGovernor.Listener powerListener = new PowerGovernor.Listener() {
+    @Override public void onPowerLevelChanged(@PowerGovernor.Level int level) {
+      applyLeaseCap(powerGovernor.getMaxActivePlayers());
+      // Waiting players may get a lease now.
+      dispatchStrategyChanged(mStrategy);
+    }
+  };
+  // Run the election again once the network changes what autoplay is allowed
+  private final AutoplayPolicy.Listener autoplayListener = new AutoplayPolicy.Listener() {
+    @Override public void onAutoplayModeChanged(@AutoplayPolicy.Mode int mode) {
+      dispatchStrategyChanged(mStrategy);
+    }
+  };
+
   /**
    * Attach an activity to Toro. Toro register activity's life cycle to properly handle Screen
    * visibility: free necessary resource if User doesn't need it anymore
@@ -103,6 +133,10 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
     if (sInstance == null) {
       synchronized (Toro.class) {
         sInstance = new Toro();
+        sInstance.powerGovernor = PowerGovernor.with(application);
+        sInstance.powerGovernor.addListener(sInstance.powerListener);
+        sInstance.decoderBudget.setLeaseCap(sInstance.powerGovernor.getMaxActivePlayers());
+        setAutoplayPolicy(new AutoplayPolicy(application));
       }
     }
 
@@ -150,6 +184,108 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
     dispatchStrategyChanged(strategy);
   }
 
+  public static PlaybackErrorPolicy getErrorPolicy() {
+    return sInstance.errorPolicy;
+  }
+
+  /**
+   * Set the policy used to retry failed playback and to exclude failing Media from the election.
+   *
+   * @param errorPolicy the policy to use.
+   */
+  public static void setErrorPolicy(@NonNull PlaybackErrorPolicy errorPolicy) {
+    //noinspection ConstantConditions
+    if (errorPolicy == null) {
+      throw new NullPointerException("Error policy must not be null");
+    }
+
+    sInstance.errorPolicy = errorPolicy;
+  }
+
+  public static DecoderBudget getDecoderBudget() {
+    return sInstance.decoderBudget;
+  }
+
+  /**
+   * Set the budget limiting how many players can hold decoders at the same time. Players already
+   * holding a lease of the previous budget are not affected.
+   *
+   * @param decoderBudget the budget to use.
+   */
+  public static void setDecoderBudget(@NonNull DecoderBudget decoderBudget) {
+    //noinspection ConstantConditions
+    if (decoderBudget == null) {
+      throw new NullPointerException("Decoder budget must not be null");
+    }
+
+    if (sInstance.powerGovernor != null) {
+      decoderBudget.setLeaseCap(sInstance.powerGovernor.getMaxActivePlayers());
+    }
+    sInstance.decoderBudget = decoderBudget;
+  }
+
+  public static ManifestCache getManifestCache() {
+    return sInstance.manifestCache;
+  }
+
+  /**
+   * Set the cache used by extensions to share parsed manifests between players.
+   *
+   * @param manifestCache the cache to use.
+   */
+  public static void setManifestCache(@NonNull ManifestCache manifestCache) {
+    //noinspection ConstantConditions
+    if (manifestCache == null) {
+      throw new NullPointerException("Manifest cache must not be null");
+    }
+
+    sInstance.manifestCache = manifestCache;
+  }
+
+  public static BufferBudget getBufferBudget() {
+    return sInstance.bufferBudget;
+  }
+
+  /**
+   * Set the memory budget shared by the buffers of all players. Players already prepared keep
+   * using the previous budget.
+   *
+   * @param bufferBudget the budget to use.
+   */
+  public static void setBufferBudget(@NonNull BufferBudget bufferBudget) {
+    //noinspection ConstantConditions
+    if (bufferBudget == null) {
+      throw new NullPointerException("Buffer budget must not be null");
+    }
+
+    sInstance.bufferBudget = bufferBudget;
+  }
+
+  public static AutoplayPolicy getAutoplayPolicy() {
+    return sInstance.autoplayPolicy;
+  }
+
+  /**
+   * Set the policy deciding whether players autoplay, and at which quality, on the current
+   * network. Elections run again right away.
+   *
+   * @param autoplayPolicy the policy to use.
+   */
+  public static void setAutoplayPolicy(@NonNull AutoplayPolicy autoplayPolicy) {
+    //noinspection ConstantConditions
+    if (autoplayPolicy == null) {
+      throw new NullPointerException("Autoplay policy must not be null");
+    }
+
+    if (sInstance.autoplayPolicy != null) {
+      sInstance.autoplayPolicy.removeListener(sInstance.autoplayListener);
+    }
+
+    sInstance.autoplayPolicy = autoplayPolicy;
+    autoplayPolicy.addListener(sInstance.autoplayListener);
+    dispatchStrategyChanged(sInstance.mStrategy);
+  }
+
   /**
    * Register a View (currently, must be one of RecyclerView) to listen to its Videos
    *
@@ -176,17 +312,17 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
       throw new RuntimeException("Adapter must be a PlayerManager");
     }
 
-    MediaDataObserver observer = new MediaDataObserver(playerManager);
-    adapter.registerAdapterDataObserver(observer);
-    sInstance.observers.put(playerManager, observer);
-
     sInstance.managers.put(view, playerManager);
-    // setup new scroll listener
-    OnScrollListenerImpl listener = new OnScrollListenerImpl();
+    // setup new scroll listener, it also schedules the elections of this View
+    OnScrollListenerImpl listener = new OnScrollListenerImpl(view);
     view.addOnScrollListener(listener);
     // Save to Cache
     sInstance.listeners.put(view, listener);
 
+    MediaDataObserver observer = new MediaDataObserver(playerManager, listener);
+    adapter.registerAdapterDataObserver(observer);
+    sInstance.observers.put(playerManager, observer);
+
     // Done registering new View
     playerManager.onRegistered();
 
@@ -195,10 +331,10 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
     if (playerManager.getPlayer() != null
         && playerManager.getPlaybackState(playerManager.getPlayer().getMediaId()) != null) {
       ToroPlayer player = playerManager.getPlayer();
-      if (player.wantsToPlay() && player.wantsToPlay() && //
+      if (player.wantsToPlay() && isAvailable(player) && //
           Toro.getStrategy().allowsToPlay(player, view)) {
         if (!player.isPrepared()) {
-          player.preparePlayer(false);
+          preparePlayer(playerManager, player);
         } else if (!player.isPlaying()) {
           playerManager.restorePlaybackState(player.getMediaId());
           playerManager.startPlayback();
@@ -228,14 +364,16 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
         manager.pausePlayback();
       }
 
-      player.releasePlayer();
+      releasePlayer(player);
     }
 
     manager.onUnregistered();
     view.removeOnScrollListener(listener);
+    LandingPredictor.detach(view);
 
     try {
       observer.remove();
+      listener.remove();
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -245,6 +383,20 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
     return viewParent instanceof RecyclerView ? sInstance.managers.get(viewParent) : null;
   }
 
+  /**
+   * Run the election of a registered View on the next frame. Requests made in the mean time are
+   * coalesced into this one.
+   *
+   * @param viewParent the RecyclerView.
+   */
+  static void requestElection(ViewParent viewParent) {
+    OnScrollListenerImpl listener =
+        viewParent instanceof RecyclerView ? sInstance.listeners.get(viewParent) : null;
+    if (listener != null) {
+      listener.requestElection();
+    }
+  }
+
   public static void resume() {
     rest(false);
   }
@@ -280,8 +432,8 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
   }
 
   private static void dispatchStrategyChanged(ToroStrategy newStrategy) {
-    for (Map.Entry<RecyclerView, OnScrollListenerImpl> entry : sInstance.listeners.entrySet()) {
-      entry.getValue().onScrollStateChanged(entry.getKey(), RecyclerView.SCROLL_STATE_IDLE);
+    for (OnScrollListenerImpl listener : sInstance.listeners.values()) {
+      listener.requestElection();
     }
   }
 
@@ -469,6 +621,11 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
    * @hide
    */
   static boolean doAllowsToPlay(ToroPlayer player, ViewParent parent) {
+    // The network doesn't afford autoplay
+    if (sInstance.autoplayPolicy.getMode() == AutoplayPolicy.MODE_OFF) {
+      return false;
+    }
+
     Rect windowRect = new Rect();
     Rect parentRect = new Rect();
     if (parent instanceof View) {
@@ -493,10 +650,119 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
         || parentRect.intersect(videoRect));
   }
 
+  /**
+   * @param player the player to check.
+   * @return {@code false} if the player's Media has recently failed and is waiting for a retry.
+   */
+  static boolean isAvailable(@NonNull ToroPlayer player) {
+    return sInstance.errorPolicy.isAvailable(player.getMediaId());
+  }
+
+  /**
+   * Prepare a player at the saved position of its Media, so that the engine starts buffering from
+   * there instead of being seeked after preparation.
+   *
+   * @param manager the PlayerManager which holds the saved playback state.
+   * @param player the player to prepare.
+   */
+  static void preparePlayer(@NonNull PlayerManager manager, @NonNull ToroPlayer player) {
+    if (!acquireDecoder(player)) {
+      // Wait for a decoder, the election will run again once one is released.
+      return;
+    }
+
+    PlaybackState state = manager.getPlaybackState(player.getMediaId());
+    Long position = state != null ? state.getPosition() : null;
+    if (position != null && position >= 0) {
+      player.preparePlayer(false, position);
+    } else {
+      // Let the engine pick its default position, e.g. the live edge of a live stream.
+      player.preparePlayer(false);
+    }
+  }
+
+  /**
+   * Release a player and give back its decoder lease.
+   *
+   * @param player the player to release.
+   */
+  static void releasePlayer(@NonNull ToroPlayer player) {
+    player.releasePlayer();
+    releaseDecoder(player);
+  }
+
+  // Give back the decoder lease of a player, and let waiting players try again.
+  private static void releaseDecoder(@NonNull ToroPlayer player) {
+    DecoderBudget budget = sInstance.decoderBudget;
+    if (budget.release(player) && budget.hasWaiters()) {
+      // Let the Views of waiting players run their election again.
+      for (ToroPlayer waiter : budget.getWaiters()) {
+        ViewParent parent = waiter.getPlayerView().getParent();
+        while (parent != null && !(parent instanceof RecyclerView)) {
+          parent = parent.getParent();
+        }
+
+        if (parent != null) {
+          sInstance.scheduleRetry((RecyclerView) parent, 0);
+        }
+      }
+    }
+  }
+
+  // Get a decoder lease, pre-empting a prepared player which is neither elected nor playing.
+  private static boolean acquireDecoder(@NonNull ToroPlayer player) {
+    DecoderBudget budget = sInstance.decoderBudget;
+    if (budget.acquire(player)) {
+      return true;
+    }
+
+    for (ToroPlayer holder : budget.getHolders()) {
+      if (!holder.isPlaying() && !isElected(holder)) {
+        holder.releasePlayer();
+        budget.release(holder);
+        return budget.acquire(player);
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Cap the decoder leases, and release the players holding more leases than the new cap allows.
+   * Players which are neither elected nor playing go first, oldest first.
+   */
+  static void applyLeaseCap(int leaseCap) {
+    DecoderBudget budget = sInstance.decoderBudget;
+    budget.setLeaseCap(leaseCap);
+    int surplus = budget.getHolders().size() - budget.getMaxLeases();
+    for (ToroPlayer holder : budget.getHolders()) {
+      if (surplus <= 0) {
+        break;
+      }
+
+      if (!holder.isPlaying() && !isElected(holder)) {
+        holder.releasePlayer();
+        budget.release(holder);
+        surplus--;
+      }
+    }
+  }
+
+  private static boolean isElected(@NonNull ToroPlayer player) {
+    for (PlayerManager manager : sInstance.managers.values()) {
+      if (player == manager.getPlayer()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   // Centralize Video state callbacks
 
   void onVideoPrepared(@NonNull ToroPlayer player, @NonNull View itemView,
       @Nullable ViewParent parent) {
+    errorPolicy.onPlaybackSuccess(player.getMediaId());
     if (!player.wantsToPlay() || !Toro.getStrategy().allowsToPlay(player, parent)) {
       return;
     }
@@ -525,6 +791,58 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
     }
   }
 
+  /**
+   * A player's engine was released, maybe by its View itself, so its decoder lease is given back.
+   * Releasing through {@link #releasePlayer(ToroPlayer)} ends here too, this is then a no-op.
+   */
+  void onPlayerReleased(@NonNull ToroPlayer player) {
+    releaseDecoder(player);
+  }
+
+  /**
+   * A player handed off its engine to another View. The engine keeps playing there, so this player
+   * is detached from its manager and gives back its decoder lease, but is not released.
+   */
+  void onPlayerHandedOff(@NonNull ToroPlayer player, @Nullable ViewParent parent) {
+    PlayerManager manager = getManager(parent);
+    if (manager != null && player == manager.getPlayer()) {
+      manager.savePlaybackState( //
+          player.getMediaId(), player.getCurrentPosition(), player.getDuration());
+      manager.setPlayer(null);
+    }
+
+    releaseDecoder(player);
+  }
+
+  /**
+   * A player took over an engine handed off by another View. The engine is already prepared and
+   * maybe playing, so it is not re-prepared nor seeked: playback simply continues if this player
+   * is allowed to play, or is paused otherwise.
+   */
+  void onPlayerTakenOver(@NonNull ToroPlayer player, @Nullable ViewParent parent) {
+    errorPolicy.onPlaybackSuccess(player.getMediaId());
+    decoderBudget.acquire(player);
+    PlayerManager manager = getManager(parent);
+    if (manager == null) {
+      return;
+    }
+
+    // Keep the saved state in sync with the engine, so a later restore doesn't jump back.
+    manager.savePlaybackState( //
+        player.getMediaId(), player.getCurrentPosition(), player.getDuration());
+    if (player != manager.getPlayer()) {
+      if (manager.getPlayer() != null || !player.wantsToPlay() || !Toro.getStrategy()
+          .allowsToPlay(player, parent)) {
+        player.pause();
+        return;
+      }
+
+      manager.setPlayer(player);
+    }
+
+    manager.startPlayback();
+  }
+
   void onPlaybackCompletion(@NonNull ToroPlayer player) {
     // 1. Internal jobs
     PlayerManager manager = null;
@@ -541,43 +859,84 @@ public final class Toro implements Application.ActivityLifecycleCallbacks {
     }
   }
 
-  boolean onPlaybackError(@NonNull ToroPlayer player, @NonNull Exception error) {
-    for (PlayerManager manager : sInstance.managers.values()) {
+  boolean onPlaybackError(@NonNull ToroPlayer player, @NonNull Exception error,
+      @PlaybackErrorPolicy.ErrorType int errorType) {
+    long retryDelay = errorPolicy.onPlaybackError(player.getMediaId(), errorType);
+    boolean willRetry = retryDelay != PlaybackErrorPolicy.NO_RETRY;
+    for (Map.Entry<RecyclerView, PlayerManager> entry : managers.entrySet()) {
+      PlayerManager manager = entry.getValue();
       if (player.equals(manager.getPlayer())) {
-        manager.savePlaybackState(player.getMediaId(), 0L, player.getDuration());
+        // Retry from where it failed, or start over once it is available again.
+        manager.savePlaybackState(player.getMediaId(),
+            willRetry ? player.getCurrentPosition() : 0L, player.getDuration());
         manager.pausePlayback();
+        if (willRetry) {
+          scheduleRetry(entry.getKey(), retryDelay);
+        }
       }
     }
 
     return true;
   }
 
+  // Re-run the election after a delay, or once User stops scrolling, unless View is gone.
+  private void scheduleRetry(final RecyclerView view, long delayMs) {
+    handler.postDelayed(new Runnable() {
+      @Override public void run() {
+        OnScrollListenerImpl listener = listeners.get(view);
+        if (listener != null) {
+          listener.requestElectionWhenIdle();
+        }
+      }
+    }, delayMs);
+  }
+
   // Update to correctly support API 24+
   private void dispatchOnActivityInactive(Activity activity) {
     for (Map.Entry<RecyclerView, PlayerManager> entry : managers.entrySet()) {
       if (entry.getKey().getContext() == activity) {
         PlayerManager manager = entry.getValue();
         if (manager.getPlayer() != null) {
+          if (keepsPlayingInBackground(manager.getPlayer())) {
+            manager.getPlayer().onActivityInactive();
+            continue;
+          }
+
           if (manager.getPlayer().isPlaying()) {
             manager.savePlaybackState(manager.getPlayer().getMediaId(),
                 manager.getPlayer().getCurrentPosition(), manager.getPlayer().getDuration());
             manager.pausePlayback();
           }
-          manager.getPlayer().releasePlayer();
+          releasePlayer(manager.getPlayer());
           manager.getPlayer().onActivityInactive();
         }
       }
     }
   }
 
+  static boolean keepsPlayingInBackground(@NonNull ToroPlayer player) {
+    return player instanceof BackgroundAudioPlayer
+        && ((BackgroundAudioPlayer) player).isBackgroundAudioEnabled()
+        && player.isPlaying();
+  }
+
   private void dispatchOnActivityActive(Activity activity) {
     for (Map.Entry<RecyclerView, PlayerManager> entry : managers.entrySet()) {
       if (entry.getKey().getContext() == activity) {  // reference equality
         PlayerManager manager = entry.getValue();
         if (manager.getPlayer() != null) {
           manager.getPlayer().onActivityActive();
+          if (!isAvailable(manager.getPlayer())) {
+            continue;
+          }
+
+          if (manager.getPlayer().isPrepared() && manager.getPlayer().isPlaying()) {
+            // Kept playing in background, there is nothing to restore.
+            continue;
+          }
+
           if (!manager.getPlayer().isPrepared()) {
-            manager.getPlayer().preparePlayer(false);
+            preparePlayer(manager, manager.getPlayer());
           } else {
             manager.restorePlaybackState(manager.getPlayer().getMediaId());
             manager.startPlayback();
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro;
+
+import org.junit.Test;
+
+import static im.ene.toro.AutoplayPolicy.DEFAULT_MIN_FULL_BITRATE;
+import static im.ene.toro.AutoplayPolicy.MODE_FULL;
+import static im.ene.toro.AutoplayPolicy.MODE_OFF;
+import static im.ene.toro.AutoplayPolicy.MODE_PREVIEW;
+import static im.ene.toro.AutoplayPolicy.computeMode;
+import static im.ene.toro.BandwidthEstimator.NO_ESTIMATE;
+import static org.junit.Assert.assertEquals;
+
+public class AutoplayPolicyTest {
+
+  @Test public void computeMode_offWithoutNetwork() {
+    assertEquals(MODE_OFF, computeMode(false, false, false, NO_ESTIMATE, DEFAULT_MIN_FULL_BITRATE));
+  }
+
+  @Test public void computeMode_offWithDataSaverOnMeteredNetwork() {
+    assertEquals(MODE_OFF, computeMode(true, true, true, NO_ESTIMATE, DEFAULT_MIN_FULL_BITRATE));
+    assertEquals(MODE_FULL, computeMode(true, false, true, NO_ESTIMATE, DEFAULT_MIN_FULL_BITRATE));
+  }
+
+  @Test public void computeMode_fullWithoutEstimate() {
+    assertEquals(MODE_FULL, computeMode(true, false, false, NO_ESTIMATE, DEFAULT_MIN_FULL_BITRATE));
+  }
+
+  @Test public void computeMode_fromBitrate() {
+    long full = DEFAULT_MIN_FULL_BITRATE;
+    assertEquals(MODE_FULL, computeMode(true, false, false, full, full));
+    assertEquals(MODE_PREVIEW, computeMode(true, false, false, full - 1, full));
+  }
+
+  @Test public void computeMode_neverOffOnBitrateAlone() {
+    // Otherwise no playback would bring a new sample to turn autoplay back on.
+    assertEquals(MODE_PREVIEW, computeMode(true, false, false, 0, DEFAULT_MIN_FULL_BITRATE));
+    assertEquals(MODE_PREVIEW, computeMode(true, true, false, 1, DEFAULT_MIN_FULL_BITRATE));
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro;
+
+import org.junit.Test;
+
+import static im.ene.toro.BandwidthEstimator.LOW_BITRATE;
+import static im.ene.toro.BandwidthEstimator.LOW_MAX_AGE_MS;
+import static im.ene.toro.BandwidthEstimator.MAX_AGE_MS;
+import static im.ene.toro.BandwidthEstimator.isExpired;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthEstimatorTest {
+
+  private static final long NOW = 1489881600000L;
+
+  @Test public void isExpired_highEstimateLastsMaxAge() {
+    assertFalse(isExpired(LOW_BITRATE, NOW - MAX_AGE_MS, NOW));
+    assertTrue(isExpired(LOW_BITRATE, NOW - MAX_AGE_MS - 1, NOW));
+  }
+
+  @Test public void isExpired_lowEstimateExpiresEarly() {
+    assertFalse(isExpired(LOW_BITRATE - 1, NOW - LOW_MAX_AGE_MS, NOW));
+    assertTrue(isExpired(LOW_BITRATE - 1, NOW - LOW_MAX_AGE_MS - 1, NOW));
+    assertFalse(isExpired(LOW_BITRATE, NOW - LOW_MAX_AGE_MS - 1, NOW));
+  }
+}
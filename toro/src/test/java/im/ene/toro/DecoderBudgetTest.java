@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro;
+
+import android.view.View;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class DecoderBudgetTest {
+
+  private DecoderBudget budget;
+  private ToroPlayer first;
+  private ToroPlayer second;
+
+  @Before public void setUp() {
+    budget = new DecoderBudget(1);
+    first = mock(ToroPlayer.class);
+    second = mock(ToroPlayer.class);
+    // Players' Views are not in any RecyclerView, so no retry is scheduled for waiters.
+    when(first.getPlayerView()).thenReturn(mock(View.class));
+    when(second.getPlayerView()).thenReturn(mock(View.class));
+  }
+
+  @After public void tearDown() {
+    Toro.sInstance = null;
+  }
+
+  @Test(expected = IllegalArgumentException.class) public void rejectsEmptyBudget() {
+    new DecoderBudget(0);
+  }
+
+  @Test public void acquire_waitsOnceBudgetIsUsed() {
+    assertTrue(budget.acquire(first));
+    assertTrue(budget.acquire(first));
+    assertFalse(budget.acquire(second));
+    assertTrue(budget.isHolding(first));
+    assertTrue(budget.isWaiting(second));
+  }
+
+  @Test public void release_letsWaiterAcquire() {
+    budget.acquire(first);
+    budget.acquire(second);
+
+    assertTrue(budget.release(first));
+    assertFalse(budget.release(first));
+    assertTrue(budget.acquire(second));
+    assertFalse(budget.hasWaiters());
+  }
+
+  @Test public void release_ofWaiterStopsWaiting() {
+    DecoderBudget.Listener listener = mock(DecoderBudget.Listener.class);
+    budget.setListener(listener);
+    budget.acquire(first);
+    budget.acquire(second);
+
+    assertFalse(budget.release(second));
+    assertFalse(budget.isWaiting(second));
+    verify(listener).onWaitingForDecoder(second, true);
+    verify(listener).onWaitingForDecoder(second, false);
+    verifyNoMoreInteractions(listener);
+  }
+
+  @Test public void leaseCap_appliesToNextRequests() {
+    DecoderBudget budget = new DecoderBudget(3);
+    budget.acquire(first);
+    budget.acquire(second);
+    budget.setLeaseCap(1);
+
+    assertEquals(1, budget.getMaxLeases());
+    assertTrue(budget.isHolding(second));
+    assertFalse(budget.acquire(mock(ToroPlayer.class)));
+  }
+
+  @Test public void applyLeaseCap_releasesSurplusIdleHolders() {
+    Toro.sInstance = new Toro();
+    DecoderBudget budget = new DecoderBudget(3);
+    Toro.setDecoderBudget(budget);
+    budget.acquire(first);
+    budget.acquire(second);
+    // The playing one keeps its decoder, though it is the oldest holder.
+    when(first.isPlaying()).thenReturn(true);
+
+    Toro.applyLeaseCap(1);
+    assertTrue(budget.isHolding(first));
+    assertFalse(budget.isHolding(second));
+    verify(second).releasePlayer();
+  }
+
+  @Test public void onPlayerReleased_givesBackLease() {
+    Toro.sInstance = new Toro();
+    Toro.setDecoderBudget(budget);
+    PlayerViewHelper helper = new PlayerViewHelper(first, mock(View.class)) {
+    };
+    budget.acquire(first);
+    budget.acquire(second);
+
+    // The View released its engine by itself, e.g. on detach or on completion.
+    helper.onPlayerReleased();
+    assertFalse(budget.isHolding(first));
+    assertTrue(budget.acquire(second));
+
+    // Releasing through Toro afterwards is harmless.
+    Toro.releasePlayer(first);
+    assertTrue(budget.isHolding(second));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package im.ene.toro;
+
+import android.support.v7.widget.RecyclerView;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class LandingPredictorTest {
+
+  private LandingPredictor.Prediction prediction;
+  private ToroPlayer predicted;
+  private ToroPlayer other;
+
+  @Before public void setUp() {
+    prediction = new LandingPredictor.Prediction();
+    predicted = mock(ToroPlayer.class);
+    other = mock(ToroPlayer.class);
+  }
+
+  @Test public void settling_doesNotReleaseBeforeTheElection() {
+    prediction.onTarget(5);
+    prediction.onPrepared(predicted);
+    prediction.onSettled();
+
+    // The election of the list at rest runs a frame later: the prediction must still be there.
+    assertSame(predicted, prediction.player);
+  }
+
+  @Test public void electedPrediction_isKept() {
+    prediction.onTarget(5);
+    prediction.onPrepared(predicted);
+    prediction.onSettled();
+
+    assertNull(prediction.onElectionDone(predicted));
+    assertNull(prediction.player);
+  }
+
+  @Test public void unelectedPrediction_isReleasedAfterTheElection() {
+    prediction.onTarget(5);
+    prediction.onPrepared(predicted);
+    prediction.onSettled();
+
+    assertSame(predicted, prediction.onElectionDone(other));
+    assertNull(prediction.player);
+  }
+
+  @Test public void electionWhileMoving_doesNotRelease() {
+    prediction.onTarget(5);
+    prediction.onPrepared(predicted);
+
+    assertNull(prediction.onElectionDone(other));
+    assertSame(predicted, prediction.player);
+  }
+
+  @Test public void newFlingBeforeTheElection_keepsNewPrediction() {
+    prediction.onTarget(5);
+    prediction.onPrepared(predicted);
+    prediction.onSettled();
+    assertSame(predicted, prediction.onTarget(8));
+
+    assertNull(prediction.onElectionDone(other));
+    assertEquals(8, prediction.targetPosition);
+  }
+
+  @Test public void sameTarget_keepsPrediction() {
+    prediction.onTarget(5);
+    prediction.onPrepared(predicted);
+
+    assertNull(prediction.onTarget(5));
+    assertSame(predicted, prediction.player);
+  }
+
+  @Test public void cancel_returnsPrediction() {
+    prediction.onTarget(5);
+    prediction.onPrepared(predicted);
+
+    assertSame(predicted, prediction.cancel());
+    assertEquals(RecyclerView.NO_POSITION, prediction.targetPosition);
+  }
+
+  @Test public void landingPosition_followsFlingDistance() {
+    // Items of 100px, first one (position 10) starts 20px above the viewport.
+    assertEquals(10, LandingPredictor.findLandingPosition(10, -20, 100f, 0, 0, 50));
+    assertEquals(13, LandingPredictor.findLandingPosition(10, -20, 100f, 280, 0, 50));
+    assertEquals(7, LandingPredictor.findLandingPosition(10, -20, 100f, -300, 0, 50));
+  }
+
+  @Test public void landingPosition_isClampedToAdapter() {
+    assertEquals(49, LandingPredictor.findLandingPosition(10, 0, 100f, 100000, 0, 50));
+    assertEquals(0, LandingPredictor.findLandingPosition(10, 0, 100f, -100000, 0, 50));
+  }
+}
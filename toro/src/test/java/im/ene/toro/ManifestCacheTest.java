@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ManifestCacheTest {
+
+  private ManifestCache cache;
+  private Uri uri;
+
+  @Before public void setUp() {
+    cache = new ManifestCache();
+    uri = mock(Uri.class);
+  }
+
+  @Test public void put_zeroTtlIsNotCached() {
+    cache.put(uri, String.class, "live", 0);
+    assertNull(cache.get(uri, String.class));
+  }
+
+  @Test public void get_keyedByUriAndType() {
+    cache.put(uri, String.class, "static", ManifestCache.TTL_FOREVER);
+    assertEquals("static", cache.get(uri, String.class));
+    assertNull(cache.get(uri, StringBuilder.class));
+    assertNull(cache.get(mock(Uri.class), String.class));
+
+    cache.invalidate(uri, String.class);
+    assertNull(cache.get(uri, String.class));
+  }
+
+  @Test public void load_deliversCachedManifest() {
+    cache.put(uri, String.class, "static", ManifestCache.TTL_FOREVER);
+    CountingLoader loader = new CountingLoader(null);
+    @SuppressWarnings("unchecked") ManifestCache.Callback<String> callback =
+        mock(ManifestCache.Callback.class);
+
+    cache.load(uri, String.class, loader, callback);
+    verify(callback).onManifestLoaded(uri, "static");
+    assertEquals(0, loader.count.get());
+    assertFalse(cache.isLoading(uri, String.class));
+  }
+
+  @Test public void load_joinsLoadInFlight() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    CountingLoader loader = new CountingLoader(release);
+    try {
+      cache.load(uri, String.class, loader, null);
+      cache.load(uri, String.class, loader, null);
+      assertTrue(cache.isLoading(uri, String.class));
+      assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+      assertEquals(1, loader.count.get());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test public void evictsLeastRecentlyUsed() {
+    ManifestCache cache = new ManifestCache(1);
+    Uri other = mock(Uri.class);
+    cache.put(uri, String.class, "first", ManifestCache.TTL_FOREVER);
+    cache.put(other, String.class, "second", ManifestCache.TTL_FOREVER);
+    assertNull(cache.get(uri, String.class));
+    assertSame("second", cache.get(other, String.class));
+  }
+
+  private static final class CountingLoader implements ManifestCache.Loader<String> {
+
+    final AtomicInteger count = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release;
+
+    CountingLoader(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @NonNull @Override public String load(@NonNull Uri uri) throws IOException {
+      count.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return "loaded";
+    }
+
+    @Override public long getTtlMs(@NonNull String manifest) {
+      return ManifestCache.TTL_FOREVER;
+    }
+  }
+}
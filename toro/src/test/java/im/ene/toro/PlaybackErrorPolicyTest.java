@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro;
+
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static im.ene.toro.PlaybackErrorPolicy.ERROR_TYPE_DECODER;
+import static im.ene.toro.PlaybackErrorPolicy.ERROR_TYPE_DRM;
+import static im.ene.toro.PlaybackErrorPolicy.ERROR_TYPE_NETWORK;
+import static im.ene.toro.PlaybackErrorPolicy.ERROR_TYPE_UNKNOWN;
+import static im.ene.toro.PlaybackErrorPolicy.NO_RETRY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaybackErrorPolicyTest {
+
+  private PlaybackErrorPolicy policy;
+
+  @Before public void setUp() {
+    policy = new PlaybackErrorPolicy(1000, 3000, 3, 60000);
+  }
+
+  @Test public void transientErrors_backOffExponentially() {
+    assertEquals(1000, policy.onPlaybackError("id", ERROR_TYPE_NETWORK));
+    assertEquals(2000, policy.onPlaybackError("id", ERROR_TYPE_UNKNOWN));
+    // Capped by maxBackoffMs.
+    assertEquals(3000, policy.onPlaybackError("id", ERROR_TYPE_NETWORK));
+  }
+
+  @Test public void transientErrors_openTheCircuitAfterMaxRetries() {
+    for (int i = 0; i < 3; i++) {
+      policy.onPlaybackError("id", ERROR_TYPE_NETWORK);
+    }
+
+    assertEquals(NO_RETRY, policy.onPlaybackError("id", ERROR_TYPE_NETWORK));
+    assertFalse(policy.isAvailable("id"));
+  }
+
+  @Test public void decoderAndDrmErrors_areNotRetried() {
+    assertEquals(NO_RETRY, policy.onPlaybackError("decoder", ERROR_TYPE_DECODER));
+    assertEquals(NO_RETRY, policy.onPlaybackError("drm", ERROR_TYPE_DRM));
+    assertFalse(policy.isAvailable("decoder"));
+    assertFalse(policy.isAvailable("drm"));
+  }
+
+  @Test public void success_clearsTheRecord() {
+    policy.onPlaybackError("id", ERROR_TYPE_NETWORK);
+    assertFalse(policy.isAvailable("id"));
+
+    policy.onPlaybackSuccess("id");
+    assertTrue(policy.isAvailable("id"));
+    // Counting starts over.
+    assertEquals(1000, policy.onPlaybackError("id", ERROR_TYPE_NETWORK));
+  }
+
+  @Test public void errorsAreCountedPerMedia() {
+    policy.onPlaybackError("id", ERROR_TYPE_NETWORK);
+    assertEquals(1000, policy.onPlaybackError("other", ERROR_TYPE_NETWORK));
+    assertTrue(policy.isAvailable("unknown"));
+  }
+
+  @Test public void mediaWithoutId_isNotTracked() {
+    assertEquals(NO_RETRY, policy.onPlaybackError(null, ERROR_TYPE_NETWORK));
+    assertTrue(policy.isAvailable(null));
+  }
+
+  @Test public void classify_fromCauseChain() {
+    assertEquals(ERROR_TYPE_NETWORK,
+        PlaybackErrorPolicy.classify(new RuntimeException(new IOException())));
+    assertEquals(ERROR_TYPE_UNKNOWN, PlaybackErrorPolicy.classify(new RuntimeException()));
+    assertEquals(ERROR_TYPE_UNKNOWN, PlaybackErrorPolicy.classify(null));
+  }
+}
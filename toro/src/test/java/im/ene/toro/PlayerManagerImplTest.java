@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 eneim@Eneim Labs, nam@ene.im
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package im.ene.toro;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PlayerManagerImplTest {
+
+  private PlayerManagerImpl manager;
+  private ToroPlayer player;
+
+  @Before public void setUp() {
+    manager = new PlayerManagerImpl();
+    player = mock(ToroPlayer.class);
+    manager.setPlayer(player);
+  }
+
+  @Test public void restore_doesNotSeekNearTheSavedPosition() {
+    manager.saveVideoState("id", 10000L, 60000);
+    // Prepared at the saved position, but reports the sync sample right before it.
+    when(player.getCurrentPosition()).thenReturn(9600L);
+    manager.restoreVideoState("id");
+
+    verify(player, never()).seekTo(10000);
+  }
+
+  @Test public void restore_seeksFarFromTheSavedPosition() {
+    manager.saveVideoState("id", 10000L, 60000);
+    when(player.getCurrentPosition()).thenReturn(0L);
+    manager.restoreVideoState("id");
+
+    verify(player).seekTo(10000);
+  }
+
+  @Test public void restore_seeksFromAnUnknownPosition() {
+    manager.saveVideoState("id", 10000L, 60000);
+    when(player.getCurrentPosition()).thenReturn(Long.MIN_VALUE + 1);
+    manager.restoreVideoState("id");
+
+    verify(player).seekTo(10000);
+  }
+}